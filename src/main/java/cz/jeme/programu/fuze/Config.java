@@ -3,13 +3,28 @@ package cz.jeme.programu.fuze;
 import cz.jeme.programu.fuze.item.impl.Ammo;
 import cz.jeme.programu.fuze.item.impl.Gun;
 import cz.jeme.programu.fuze.item.ItemManager;
-import cz.jeme.programu.fuze.item.loot.Rarity;
+import cz.jeme.programu.fuze.item.ItemRegistry;
+import cz.jeme.programu.fuze.util.MaterialTable;
+import org.bukkit.Bukkit;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 
 /**
  * Represents the configuration of the Fuze plugin.
@@ -47,50 +62,237 @@ public final class Config {
 
 
     private final @NotNull Fuze plugin;
+    private final @NotNull File file;
+    private final @NotNull RegistryCache cache;
+    private final @NotNull RegistryFiles registryFiles;
+    private final @NotNull AtomicBoolean reloading = new AtomicBoolean(false);
+    private @Nullable CompletableFuture<Void> queuedReload; // guarded by this
+    private final @NotNull Executor asyncExecutor;
+    private final @NotNull Executor mainExecutor;
     private @NotNull FileConfiguration yaml;
+    private @NotNull ConfigurationSection registry;
+    private @NotNull MaterialTable materials = MaterialTable.DEFAULT;
+    private @Nullable ConfigWatcher watcher;
 
     private Config(final @NotNull Fuze plugin) {
         this.plugin = plugin;
+        file = new File(plugin.getDataFolder(), "config.yml");
+        cache = new RegistryCache(plugin.getDataFolder().toPath().resolve("cache").resolve("registry.bin"));
+        registryFiles = new RegistryFiles(plugin.getDataFolder().toPath().resolve("registry"));
+        asyncExecutor = task -> Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
+        mainExecutor = task -> Bukkit.getScheduler().runTask(plugin, task);
     }
 
     /**
-     * Reloads the entire plugin. Also called initially when the plugin is enabled.
+     * Reloads the entire plugin on the current thread. Called initially when the plugin is enabled.
+     * <p>For reloads while the server is running, see {@link Config#reloadAsync()}.</p>
+     *
+     * @throws IllegalStateException when a reload is already in progress or when the config could not be loaded
      */
     public void reload() {
-        plugin.reloadConfig(); // Reload config from disk
-        yaml = plugin.getConfig(); // Save config contents
+        if (!reloading.compareAndSet(false, true))
+            throw new IllegalStateException("A reload is already in progress!");
+        try {
+            commit(load());
+        } finally {
+            reloading.set(false);
+            startQueuedReload();
+        }
+    }
+
+    /**
+     * Reloads the entire plugin without stalling the main thread.
+     * <p>The config is read and all the items are built on an async thread,
+     * then the result is committed on the main thread at once.</p>
+     *
+     * @return a future completed on the main thread once the reload is committed,
+     * or completed exceptionally when the reload failed or another reload is already in progress
+     */
+    public @NotNull CompletableFuture<Void> reloadAsync() {
+        if (!reloading.compareAndSet(false, true))
+            return CompletableFuture.failedFuture(new IllegalStateException("A reload is already in progress!"));
+        return startReload();
+    }
+
+    /**
+     * Reloads the entire plugin without stalling the main thread, right away when no reload is in progress,
+     * otherwise once the reload in progress finishes.
+     * <p>At most one reload is queued, all the requests made while it waits share it.</p>
+     *
+     * @return a future completed on the main thread once the reload is committed,
+     * or completed exceptionally when the reload failed
+     */
+    public synchronized @NotNull CompletableFuture<Void> queueReload() {
+        if (queuedReload != null) return queuedReload;
+        if (reloading.compareAndSet(false, true)) return startReload();
+        queuedReload = new CompletableFuture<>();
+        return queuedReload;
+    }
+
+    private synchronized void startQueuedReload() {
+        final CompletableFuture<Void> queued = queuedReload;
+        // Another reload may have started in the meantime, the queued one then starts once that one finishes
+        if (queued == null || !reloading.compareAndSet(false, true)) return;
+        queuedReload = null;
+        startReload().whenComplete((result, exception) -> {
+            if (exception != null) queued.completeExceptionally(exception);
+            else queued.complete(null);
+        });
+    }
 
-        // Register rarities
-        Rarity.registerRarities(Objects.requireNonNull(
-                getRegistry().getConfigurationSection("rarities"),
-                "\"rarities\" not found in registry!"
-        ));
+    private @NotNull CompletableFuture<Void> startReload() {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(this::load, asyncExecutor).whenCompleteAsync((loaded, exception) -> {
+            try {
+                if (exception != null) {
+                    result.completeExceptionally(exception instanceof CompletionException ? exception.getCause() : exception);
+                    return;
+                }
+                commit(loaded);
+                result.complete(null);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                reloading.set(false);
+                startQueuedReload();
+            }
+        }, mainExecutor);
+        return result;
+    }
 
-        // Register all item types
-        ItemManager.INSTANCE.reset();
-        // Ammo must be registered first! Guns require the ammo to be registered, see Gun#getAmmo()
-        ItemManager.INSTANCE.registerItem(Ammo.class, "ammo");
-        ItemManager.INSTANCE.registerItem(Gun.class, "guns");
+    /**
+     * Returns whether a reload is currently in progress.
+     *
+     * @return true when a reload is in progress otherwise false
+     */
+    public boolean isReloading() {
+        return reloading.get();
+    }
+
+    /**
+     * The result of loading the config, ready to be committed.
+     *
+     * @param yaml      the loaded config
+     * @param section   the registry section merged from the config and the registry files
+     * @param registry  the built registry
+     * @param materials the loaded material table
+     */
+    private record Loaded(@NotNull FileConfiguration yaml,
+                          @NotNull ConfigurationSection section,
+                          @NotNull ItemRegistry registry,
+                          @NotNull MaterialTable materials) {
+    }
+
+    private @NotNull Loaded load() {
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read \"%s\"!".formatted(file.getName()), e);
+        }
+        byte[] key = RegistryCache.key(bytes, registryFiles.stamp(), plugin.getPluginMeta().getVersion());
+        RegistryCache.Cached cached = cache.read(key);
+        final YamlConfiguration loaded;
+        final ConfigurationSection section;
+        if (cached != null) {
+            loaded = cached.config();
+            section = cached.registry();
+        } else {
+            // Not cached yet, parse the YAML
+            loaded = new YamlConfiguration();
+            try {
+                loaded.loadFromString(new String(bytes, StandardCharsets.UTF_8));
+            } catch (InvalidConfigurationException e) {
+                throw new IllegalStateException("Could not load \"%s\"!".formatted(file.getName()), e);
+            }
+            YamlConfiguration defaults = new YamlConfiguration();
+            InputStream defaultsStream = plugin.getResource(file.getName());
+            if (defaultsStream != null)
+                defaults = YamlConfiguration.loadConfiguration(new InputStreamReader(defaultsStream, StandardCharsets.UTF_8));
+            loaded.setDefaults(defaults);
+            // Merge in the registry directory, only the changed registry files are parsed again
+            section = registryFiles.merge(Config.getRegistry(loaded), file.getName());
+            try {
+                cache.write(key, loaded, defaults, section);
+            } catch (IllegalStateException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not write the registry cache!", e);
+            }
+        }
+
+        ItemRegistry registry = ItemManager.INSTANCE.build(section, builder -> {
+            // Rarities must be registered first! Items require their rarity to be registered, see FuzeItem#getRarity()
+            builder.registerRarities("rarities");
+            builder.registerItem(Ammo.class, "ammo");
+            builder.registerItem(Gun.class, "guns", Ammo.class); // Guns require their ammo, see Gun#getAmmo()
+        });
+        MaterialTable materials = MaterialTable.load(loaded.getConfigurationSection("materials"));
+        return new Loaded(loaded, section, registry, materials);
+    }
+
+    private void commit(final @NotNull Loaded loaded) {
+        yaml = loaded.yaml();
+        registry = loaded.section();
+        materials = loaded.materials();
+        ItemManager.INSTANCE.publish(loaded.registry());
+
+        // Start or stop watching the config file
+        boolean watch = yaml.getBoolean("watch");
+        if (watch && watcher == null) {
+            watcher = new ConfigWatcher(plugin, file.toPath(), registryFiles.getDirectory());
+        } else if (!watch && watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Stops watching the config file, if it is watched.
+     * <p>This method should not be called outside the Fuze API.</p>
+     */
+    public void close() {
+        if (watcher == null) return;
+        watcher.close();
+        watcher = null;
     }
 
     /**
      * Returns the registry {@link ConfigurationSection}.
-     * <p>All registration data is stored in this section.</p>
+     * <p>All registration data is stored in this section. It is merged from the registry section of the config
+     * and the files of the registry directory, changes made to it are not saved.</p>
      *
      * @return the registry {@link ConfigurationSection}
      */
     public @NotNull ConfigurationSection getRegistry() {
+        return registry;
+    }
+
+    private static @NotNull ConfigurationSection getRegistry(final @NotNull FileConfiguration yaml) {
         return Objects.requireNonNull(
                 yaml.getConfigurationSection("registry"),
                 "\"registry\" not found in config!"
         );
     }
 
+    /**
+     * Returns the ballistic properties of block materials loaded from the config.
+     *
+     * @return the material table
+     */
+    public @NotNull MaterialTable getMaterials() {
+        return materials;
+    }
+
     /**
      * Saves the plugin configuration to disk.
+     *
+     * @throws IllegalStateException when the config could not be saved
      */
     public void save() {
-        plugin.saveConfig();
+        try {
+            yaml.save(file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not save \"%s\"!".formatted(file.getName()), e);
+        }
     }
 
     /**
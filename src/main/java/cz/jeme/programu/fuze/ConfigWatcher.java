@@ -0,0 +1,145 @@
+package cz.jeme.programu.fuze;
+
+import cz.jeme.programu.fuze.item.ItemManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Watches the config file and the registry directory and reloads the plugin whenever they change.
+ * <p>Runs on its own daemon thread. Changes are debounced, editors often write a file in several steps,
+ * so the reload starts only after the file stopped changing for {@link ConfigWatcher#DEBOUNCE_MILLIS}.</p>
+ * <p>The reload itself is incremental, only the items whose config changed are rebuilt.</p>
+ */
+final class ConfigWatcher implements AutoCloseable {
+    /**
+     * The time in milliseconds the config file has to stay unchanged before it is reloaded.
+     */
+    static final long DEBOUNCE_MILLIS = 500;
+
+    private final @NotNull Fuze plugin;
+    private final @NotNull Path file;
+    private final @NotNull Path registryDirectory;
+    private final @NotNull WatchService service;
+    private final @NotNull Map<WatchKey, Path> registryKeys = new ConcurrentHashMap<>();
+    private final @NotNull Thread thread;
+
+    /**
+     * Starts watching a config file and a registry directory.
+     * <p>The registry directory and its category directories are watched, including those created later.</p>
+     *
+     * @param plugin            the {@link Fuze} plugin instance
+     * @param file              the config file to watch
+     * @param registryDirectory the registry directory to watch
+     * @throws IllegalStateException when the directory of the file could not be watched
+     */
+    ConfigWatcher(final @NotNull Fuze plugin, final @NotNull Path file, final @NotNull Path registryDirectory) {
+        this.plugin = plugin;
+        this.file = file.toAbsolutePath();
+        this.registryDirectory = registryDirectory.toAbsolutePath();
+        try {
+            service = FileSystems.getDefault().newWatchService();
+            this.file.getParent().register(
+                    service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY
+            );
+            Files.createDirectories(this.registryDirectory);
+            watchRegistry(this.registryDirectory);
+            try (DirectoryStream<Path> categories = Files.newDirectoryStream(this.registryDirectory, Files::isDirectory)) {
+                for (Path category : categories) watchRegistry(category);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not watch \"%s\"!".formatted(file.getFileName()), e);
+        }
+        thread = new Thread(this::run, "Fuze Config Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!changed(service.take())) continue;
+                // Wait until the file settles
+                WatchKey key;
+                while ((key = service.poll(ConfigWatcher.DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null)
+                    changed(key);
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private void watchRegistry(final @NotNull Path directory) throws IOException {
+        WatchKey key = directory.register(
+                service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE
+        );
+        registryKeys.put(key, directory);
+    }
+
+    private boolean changed(final @NotNull WatchKey key) {
+        Path registry = registryKeys.get(key);
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true; // Events were lost
+                continue;
+            }
+            if (!(event.context() instanceof Path path)) continue;
+            if (registry == null) {
+                if (file.getFileName().equals(path)) changed = true;
+                continue;
+            }
+            Path child = registry.resolve(path);
+            if (registry.equals(registryDirectory) && event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+                // A new category directory, its files are picked up by the reload
+                try {
+                    watchRegistry(child);
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.WARNING, "Could not watch \"%s\"!".formatted(path), e);
+                }
+                changed = true;
+            } else if (RegistryFiles.isRegistryFile(path) || event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                changed = true; // Registry file changed or a category directory was deleted
+            }
+        }
+        if (!key.reset()) registryKeys.remove(key); // The directory was deleted
+        return changed;
+    }
+
+    private void reload() throws InterruptedException {
+        plugin.getLogger().info("Detected a change in the config, reloading...");
+        try {
+            // Do not drop the change when a reload is already running, reload again once it finishes
+            Config.instance().queueReload().get();
+            plugin.getLogger().info("Plugin reloaded, %d items and rarities were rebuilt."
+                    .formatted(ItemManager.INSTANCE.getRegistry().getRebuiltCount()));
+        } catch (ExecutionException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not reload the plugin!", e.getCause());
+        }
+    }
+
+    /**
+     * Stops watching the config file and the registry directory.
+     */
+    @Override
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not stop watching \"%s\"!".formatted(file.getFileName()), e);
+        }
+        thread.interrupt();
+    }
+}
@@ -1,5 +1,7 @@
 package cz.jeme.programu.fuze;
 
+import cz.jeme.programu.fuze.game.FuzeTicker;
+import cz.jeme.programu.fuze.util.Bullet;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 
@@ -17,6 +19,7 @@ public final class Fuze extends JavaPlugin {
         Config.init(this);
         Config.instance().reload();
         FuzeCommand.init(); // Initialize Fuze command
+        FuzeTicker.INSTANCE.start(this);
     }
 
     /**
@@ -24,6 +27,9 @@ public final class Fuze extends JavaPlugin {
      */
     @Override
     public void onDisable() {
+        FuzeTicker.INSTANCE.stop();
+        Bullet.persistAll(); // Bullets in flight are saved with their chunks or kept across a reload
+        Config.instance().close();
     }
 
     /**
@@ -2,6 +2,8 @@ package cz.jeme.programu.fuze;
 
 import cz.jeme.programu.fuze.item.FuzeItem;
 import cz.jeme.programu.fuze.item.ItemManager;
+import cz.jeme.programu.fuze.item.event.EventManager;
+import cz.jeme.programu.fuze.item.event.SubscriptionTimings;
 import cz.jeme.programu.fuze.util.Messages;
 import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
@@ -12,6 +14,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 
 /**
@@ -52,6 +55,11 @@ public final class FuzeCommand extends Command {
      */
     public static final @NotNull String EVERYONE_SELECTOR = "@everyone";
 
+    /**
+     * The number of subscriptions listed in the timings report.
+     */
+    public static final int TIMINGS_TOP = 10;
+
     private FuzeCommand() {
         super(
                 "fuze",
@@ -81,7 +89,8 @@ public final class FuzeCommand extends Command {
             return Action.toStringList(
                     Action.GIVE,
                     Action.HELP,
-                    Action.RELOAD
+                    Action.RELOAD,
+                    Action.TIMINGS
             );
 
         return switch (Action.from(args[0])) {
@@ -94,17 +103,14 @@ public final class FuzeCommand extends Command {
                     yield players;
                 }
 
-                case 3 -> new ArrayList<>(ItemManager.INSTANCE.getItemTypes()); // fz give player <type>
+                case 3 -> ItemManager.INSTANCE.getItemTypeIndex().startingWith(args[2]); // fz give player <type>
 
-                case 4 -> { // fz give player type <item>
-                    String type = args[2];
-                    Set<FuzeItem> items = ItemManager.INSTANCE.getItemsByType(type);
-                    yield items.stream().map(FuzeItem::getKey).toList();
-                }
+                case 4 -> ItemManager.INSTANCE.getItemKeyIndex(args[2]).startingWith(args[3]); // fz give player type <item>
 
                 default -> List.of();
             };
 
+            case TIMINGS -> length == 2 ? List.of("on", "off") : List.of(); // fz timings [on|off]
 
             default -> List.of();
         };
@@ -130,6 +136,7 @@ public final class FuzeCommand extends Command {
             case RELOAD -> FuzeCommand.reload(execution);
             case GIVE -> FuzeCommand.give(execution);
             case HELP -> FuzeCommand.usage(execution.sender());
+            case TIMINGS -> FuzeCommand.timings(execution);
             case UNKNOWN -> execution.sender()
                     .sendMessage(Messages.prefix("<red>Unknown action: " + execution.args[0]));
         }
@@ -137,13 +144,25 @@ public final class FuzeCommand extends Command {
 
     private static void reload(final @NotNull Execution execution) {
         final CommandSender sender = execution.sender();
-        try {
-            Config.instance().reload();
-        } catch (Exception e) {
-            sender.sendMessage(Messages.prefix("<red>An error occurred while reloading the plugin! Please check the console!"));
-            throw e;
+        if (Config.instance().isReloading()) {
+            sender.sendMessage(Messages.prefix("<red>The plugin is already reloading!"));
+            return;
         }
-        sender.sendMessage(Messages.prefix("<green>Plugin reloaded successfully!"));
+        final long start = System.nanoTime();
+        sender.sendMessage(Messages.prefix("<gray>Reloading the plugin..."));
+        // Completed on the main thread
+        Config.instance().reloadAsync().whenComplete((result, exception) -> {
+            if (exception != null) {
+                sender.sendMessage(Messages.prefix("<red>An error occurred while reloading the plugin! Please check the console!"));
+                Fuze.getPlugin().getLogger().log(Level.SEVERE, "Could not reload the plugin!", exception);
+                return;
+            }
+            sender.sendMessage(Messages.prefix("<green>Plugin reloaded successfully in %d ms! (%d items and rarities rebuilt)"
+                    .formatted(
+                            (System.nanoTime() - start) / 1_000_000,
+                            ItemManager.INSTANCE.getRegistry().getRebuiltCount()
+                    )));
+        });
     }
 
     private static void give(final @NotNull Execution execution) {
@@ -209,6 +228,62 @@ public final class FuzeCommand extends Command {
         }
     }
 
+    private static void timings(final @NotNull Execution execution) {
+        final CommandSender sender = execution.sender();
+
+        if (execution.args().length > 2) {
+            sender.sendMessage(Messages.prefix("<red>Too many arguments!"));
+            FuzeCommand.usage(sender);
+            return;
+        }
+
+        if (execution.args().length == 2) {
+            final String option = execution.args()[1];
+            switch (option) {
+                case "on" -> {
+                    EventManager.INSTANCE.setTimingsEnabled(true);
+                    sender.sendMessage(Messages.prefix("<green>Timings enabled!"));
+                }
+                case "off" -> {
+                    EventManager.INSTANCE.setTimingsEnabled(false);
+                    sender.sendMessage(Messages.prefix("<green>Timings disabled!"));
+                }
+                default -> sender.sendMessage(Messages.prefix("<red>Unknown timings option: " + option));
+            }
+            return;
+        }
+
+        if (!EventManager.INSTANCE.isTimingsEnabled()) {
+            sender.sendMessage(Messages.prefix("<red>Timings are disabled! Enable them using \"/fz timings on\"."));
+            return;
+        }
+
+        // Print the top subscriptions and start a new window
+        EventManager.TimingsReport report = EventManager.INSTANCE.drainTimings();
+        sender.sendMessage(Messages.prefix("<gray>Timings of the last <white>%.1f s</white>:"
+                .formatted(report.windowNanos() / 1e9)));
+        List<SubscriptionTimings.Snapshot> top = report.subscriptions()
+                .subList(0, Math.min(FuzeCommand.TIMINGS_TOP, report.subscriptions().size()));
+        if (top.isEmpty()) {
+            sender.sendMessage(Messages.deserialize("<gray>No subscriptions were invoked."));
+            return;
+        }
+        for (int i = 0; i < top.size(); i++) {
+            SubscriptionTimings.Snapshot timings = top.get(i);
+            sender.sendMessage(Messages.deserialize(
+                    "<gray>%d. <white>%s</white>: %d calls, %.2f ms total, %.2f µs mean, p99 < %.2f µs"
+                            .formatted(
+                                    i + 1,
+                                    timings.name(),
+                                    timings.count(),
+                                    timings.totalNanos() / 1e6,
+                                    timings.meanNanos() / 1e3,
+                                    timings.percentileNanos(0.99) / 1e3
+                            )
+            ));
+        }
+    }
+
     private static void usage(final @NotNull CommandSender sender) {
         // TODO!
         sender.sendMessage(Messages.deserialize("<red>This is a usage!"));
@@ -223,6 +298,7 @@ public final class FuzeCommand extends Command {
         GIVE("give"),
         RELOAD("reload"),
         HELP("help"),
+        TIMINGS("timings"),
         DRAGON("dragon"),
         UNKNOWN("UNKNOWN");
 
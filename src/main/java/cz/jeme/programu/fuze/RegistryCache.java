@@ -0,0 +1,257 @@
+package cz.jeme.programu.fuze;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.MemoryConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binary cache of the parsed config, so the YAML does not have to be parsed again on every start.
+ * <p>The parsed config is cached together with the registry merged from the registry files (see {@link RegistryFiles}).
+ * The cache is keyed by a SHA-256 hash of the config bytes, the stamp of the registry files and the plugin version.
+ * When the key does not match
+ * (or the cache is missing or corrupted), the config is parsed from YAML and the cache is written again.
+ * The cache is read into a single buffer at once.</p>
+ * <p>Only the parsed config tree (strings, numbers, booleans and lists) is cached. Items and rarities are still
+ * constructed from it on every load, since their prototypes ({@link org.bukkit.inventory.ItemStack}s, components)
+ * are server runtime objects whose serialized forms would have to go through the same deserialization anyway.</p>
+ */
+final class RegistryCache {
+    private static final int MAGIC = 0x46555A45; // FUZE
+    private static final int FORMAT = 2;
+
+    private static final byte SECTION = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte LIST = 6;
+
+    private final @NotNull Path file;
+
+    /**
+     * Creates a new registry cache.
+     *
+     * @param file the cache file
+     */
+    RegistryCache(final @NotNull Path file) {
+        this.file = file;
+    }
+
+    /**
+     * A cached config.
+     *
+     * @param config   the parsed config with its defaults set
+     * @param registry the registry merged from the config and the registry files
+     */
+    record Cached(@NotNull YamlConfiguration config, @NotNull ConfigurationSection registry) {
+    }
+
+    /**
+     * Computes the cache key of config bytes and registry files.
+     *
+     * @param config   the raw config bytes
+     * @param registry the stamp of the registry files, see {@link RegistryFiles#stamp()}
+     * @param version  the plugin version
+     * @return the cache key
+     */
+    static byte @NotNull [] key(final byte @NotNull [] config, final @NotNull String registry, final @NotNull String version) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available!", e);
+        }
+        digest.update(version.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(registry.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        return digest.digest(config);
+    }
+
+    /**
+     * Reads the cached config.
+     *
+     * @param key the expected cache key
+     * @return the cached config or null when the cache is missing, stale or corrupted
+     */
+    @Nullable Cached read(final byte @NotNull [] key) {
+        if (!Files.isRegularFile(file)) return null;
+        try {
+            // Read into the heap, a mapping would keep the file locked on Windows until it is garbage collected
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.getInt() != RegistryCache.MAGIC || buffer.getInt() != RegistryCache.FORMAT) return null;
+            byte[] cachedKey = new byte[RegistryCache.readLength(buffer)];
+            buffer.get(cachedKey);
+            if (!Arrays.equals(cachedKey, key)) return null;
+
+            YamlConfiguration config = new YamlConfiguration();
+            RegistryCache.readSection(buffer, config);
+            YamlConfiguration defaults = new YamlConfiguration();
+            RegistryCache.readSection(buffer, defaults);
+            config.setDefaults(defaults);
+            MemoryConfiguration registry = new MemoryConfiguration();
+            RegistryCache.readSection(buffer, registry);
+            return new Cached(config, registry);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            return null; // Corrupted
+        }
+    }
+
+    /**
+     * Writes the config to the cache, replacing the previous cache atomically.
+     * <p>When the config contains values that can not be cached, no cache is written.</p>
+     *
+     * @param key      the cache key
+     * @param config   the parsed config
+     * @param defaults the parsed default config
+     * @param registry the merged registry
+     * @return true when the cache was written otherwise false
+     * @throws IllegalStateException when the cache could not be written
+     */
+    boolean write(final byte @NotNull [] key,
+                  final @NotNull ConfigurationSection config,
+                  final @NotNull ConfigurationSection defaults,
+                  final @NotNull ConfigurationSection registry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(RegistryCache.MAGIC);
+            out.writeInt(RegistryCache.FORMAT);
+            out.writeInt(key.length);
+            out.write(key);
+            RegistryCache.writeSection(out, config);
+            RegistryCache.writeSection(out, defaults);
+            RegistryCache.writeSection(out, registry);
+        } catch (IllegalArgumentException e) {
+            return false; // Not cacheable
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize the registry cache!", e);
+        }
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Files.write(temp, bytes.toByteArray());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write the registry cache!", e);
+        }
+        return true;
+    }
+
+    private static void writeSection(final @NotNull DataOutputStream out, final @NotNull ConfigurationSection section) throws IOException {
+        Map<String, Object> values = section.getValues(false);
+        out.writeInt(values.size());
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            RegistryCache.writeString(out, entry.getKey());
+            RegistryCache.writeValue(out, entry.getValue());
+        }
+    }
+
+    private static void writeValue(final @NotNull DataOutputStream out, final @Nullable Object value) throws IOException {
+        if (value instanceof ConfigurationSection section) {
+            out.writeByte(RegistryCache.SECTION);
+            RegistryCache.writeSection(out, section);
+        } else if (value instanceof String string) {
+            out.writeByte(RegistryCache.STRING);
+            RegistryCache.writeString(out, string);
+        } else if (value instanceof Integer number) {
+            out.writeByte(RegistryCache.INT);
+            out.writeInt(number);
+        } else if (value instanceof Long number) {
+            out.writeByte(RegistryCache.LONG);
+            out.writeLong(number);
+        } else if (value instanceof Double number) {
+            out.writeByte(RegistryCache.DOUBLE);
+            out.writeDouble(number);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(RegistryCache.BOOLEAN);
+            out.writeBoolean(bool);
+        } else if (value instanceof List<?> list) {
+            out.writeByte(RegistryCache.LIST);
+            out.writeInt(list.size());
+            for (Object element : list) {
+                if (element instanceof ConfigurationSection)
+                    throw new IllegalArgumentException("Sections in lists can not be cached!");
+                RegistryCache.writeValue(out, element);
+            }
+        } else {
+            throw new IllegalArgumentException("Values of type " + (value == null ? "null" : value.getClass().getName()) + " can not be cached!");
+        }
+    }
+
+    private static void writeString(final @NotNull DataOutputStream out, final @NotNull String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void readSection(final @NotNull ByteBuffer buffer, final @NotNull ConfigurationSection section) {
+        int size = RegistryCache.readLength(buffer);
+        for (int i = 0; i < size; i++) {
+            String key = RegistryCache.readString(buffer);
+            byte type = buffer.get();
+            if (type == RegistryCache.SECTION) {
+                RegistryCache.readSection(buffer, section.createSection(key));
+            } else {
+                section.set(key, RegistryCache.readValue(buffer, type));
+            }
+        }
+    }
+
+    private static @NotNull Object readValue(final @NotNull ByteBuffer buffer, final byte type) {
+        return switch (type) {
+            case RegistryCache.STRING -> RegistryCache.readString(buffer);
+            case RegistryCache.INT -> buffer.getInt();
+            case RegistryCache.LONG -> buffer.getLong();
+            case RegistryCache.DOUBLE -> buffer.getDouble();
+            case RegistryCache.BOOLEAN -> buffer.get() != 0;
+            case RegistryCache.LIST -> {
+                int size = RegistryCache.readLength(buffer);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++)
+                    list.add(RegistryCache.readValue(buffer, buffer.get()));
+                yield list;
+            }
+            default -> throw new IllegalArgumentException("Unknown cached value type: " + type);
+        };
+    }
+
+    private static @NotNull String readString(final @NotNull ByteBuffer buffer) {
+        byte[] bytes = new byte[RegistryCache.readLength(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a length or a count of elements, every element takes at least one byte.
+     * <p>The length is checked against the remaining bytes, so a corrupted length is rejected
+     * before anything is allocated for it.</p>
+     *
+     * @throws IllegalArgumentException when the length is negative or exceeds the remaining bytes
+     */
+    private static int readLength(final @NotNull ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining())
+            throw new IllegalArgumentException("Invalid cached length: " + length);
+        return length;
+    }
+}
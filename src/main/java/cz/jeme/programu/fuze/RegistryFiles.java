@@ -0,0 +1,205 @@
+package cz.jeme.programu.fuze;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.MemoryConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Loads the registry split across the files of the registry directory and merges it with the registry in the config.
+ * <p>Files directly in the registry directory have the same shape as the registry section of the config
+ * (e.g. {@code guns.ak-47.damage}), files in a category directory (e.g. {@code registry/guns/ak-47.yml})
+ * contain the instances of that category directly (e.g. {@code ak-47.damage}).</p>
+ * <p>The files are parsed in parallel. Parsed files are kept in memory and parsed again only when
+ * their modification time or size changes, so a reload after editing one file parses just that file.
+ * The parsed files are copied into the merged registry, so changes made to the merged registry never leak
+ * into the parsed files. On startup, the merged registry is read from the {@link RegistryCache} instead,
+ * see {@link RegistryFiles#stamp()}.</p>
+ */
+final class RegistryFiles {
+    private final @NotNull Path directory;
+    private final @NotNull Map<Path, Parsed> parsed = new ConcurrentHashMap<>();
+
+    /**
+     * A parsed registry file.
+     *
+     * @param modified the modification time of the file when it was parsed
+     * @param size     the size of the file when it was parsed
+     * @param yaml     the parsed file
+     */
+    private record Parsed(@NotNull FileTime modified, long size, @NotNull YamlConfiguration yaml) {
+    }
+
+    /**
+     * Creates a new registry file loader.
+     *
+     * @param directory the registry directory
+     */
+    RegistryFiles(final @NotNull Path directory) {
+        this.directory = directory.toAbsolutePath();
+    }
+
+    /**
+     * Returns the registry directory.
+     *
+     * @return the registry directory
+     */
+    @NotNull Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns whether a path is a registry file by its name.
+     *
+     * @param path the path to check
+     * @return true when the path is a YAML file otherwise false
+     */
+    static boolean isRegistryFile(final @NotNull Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".yml") || name.endsWith(".yaml");
+    }
+
+    /**
+     * Returns a stamp of all the registry files: their paths, modification times and sizes.
+     * <p>The stamp changes whenever a registry file is added, removed or modified,
+     * so it is a part of the {@link RegistryCache} key.</p>
+     *
+     * @return the stamp of the registry files
+     * @throws IllegalStateException when the registry directory could not be listed
+     */
+    @NotNull String stamp() {
+        StringBuilder stamp = new StringBuilder();
+        for (Path file : files()) {
+            final BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read registry file \"%s\"!".formatted(file.getFileName()), e);
+            }
+            stamp.append(directory.relativize(file)).append('\0')
+                    .append(attributes.lastModifiedTime().toMillis()).append('\0')
+                    .append(attributes.size()).append('\n');
+        }
+        return stamp.toString();
+    }
+
+    /**
+     * Loads all the registry files and merges them with a registry section.
+     * <p>All the instances are copied into the merged registry, it shares no sections with the base registry
+     * or the parsed registry files.</p>
+     *
+     * @param base   the registry section of the config
+     * @param source the name of the config, used in error messages
+     * @return the merged registry
+     * @throws IllegalStateException    when a registry file could not be read or parsed
+     * @throws IllegalArgumentException when an instance is defined more than once
+     */
+    @NotNull ConfigurationSection merge(final @NotNull ConfigurationSection base, final @NotNull String source) {
+        List<Path> files = files();
+        parsed.keySet().retainAll(files);
+        List<YamlConfiguration> yamls = files.parallelStream()
+                .map(this::parse)
+                .toList();
+
+        MemoryConfiguration merged = new MemoryConfiguration();
+        Map<String, String> sources = new HashMap<>();
+        RegistryFiles.mergeRegistry(merged, base, source, sources);
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            String name = directory.getParent().relativize(file).toString();
+            if (file.getParent().equals(directory)) {
+                RegistryFiles.mergeRegistry(merged, yamls.get(i), name, sources);
+            } else {
+                RegistryFiles.mergeCategory(merged, file.getParent().getFileName().toString(), yamls.get(i), name, sources);
+            }
+        }
+        return merged;
+    }
+
+    private @NotNull List<Path> files() {
+        if (!Files.isDirectory(directory)) return List.of();
+        try (Stream<Path> paths = Files.walk(directory, 2)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(RegistryFiles::isRegistryFile)
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not list the registry directory!", e);
+        }
+    }
+
+    private @NotNull YamlConfiguration parse(final @NotNull Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Parsed cached = parsed.get(file);
+            if (cached != null && cached.modified().equals(attributes.lastModifiedTime()) && cached.size() == attributes.size())
+                return cached.yaml();
+
+            YamlConfiguration yaml = new YamlConfiguration();
+            yaml.loadFromString(Files.readString(file, StandardCharsets.UTF_8));
+            parsed.put(file, new Parsed(attributes.lastModifiedTime(), attributes.size(), yaml));
+            return yaml;
+        } catch (IOException | InvalidConfigurationException e) {
+            throw new IllegalStateException("Could not load registry file \"%s\"!".formatted(file.getFileName()), e);
+        }
+    }
+
+    private static void mergeRegistry(final @NotNull ConfigurationSection merged,
+                                      final @NotNull ConfigurationSection registry,
+                                      final @NotNull String source,
+                                      final @NotNull Map<String, String> sources) {
+        for (String category : registry.getKeys(false)) {
+            ConfigurationSection section = registry.getConfigurationSection(category);
+            if (section == null)
+                throw new IllegalArgumentException("Invalid registry category \"%s\" in \"%s\"!".formatted(category, source));
+            RegistryFiles.mergeCategory(merged, category, section, source, sources);
+        }
+    }
+
+    private static void mergeCategory(final @NotNull ConfigurationSection merged,
+                                      final @NotNull String category,
+                                      final @NotNull ConfigurationSection instances,
+                                      final @NotNull String source,
+                                      final @NotNull Map<String, String> sources) {
+        ConfigurationSection section = merged.getConfigurationSection(category);
+        if (section == null) section = merged.createSection(category);
+        for (String key : instances.getKeys(false)) {
+            String previous = sources.putIfAbsent(category + "." + key, source);
+            if (previous != null)
+                throw new IllegalArgumentException("Duplicate %s key \"%s\" in \"%s\" and \"%s\"!"
+                        .formatted(category, key, previous, source));
+            // The instances are copied, the parsed files are kept for later reloads
+            Object instance = instances.get(key);
+            if (instance instanceof ConfigurationSection instanceSection) {
+                RegistryFiles.copy(instanceSection, section.createSection(key));
+            } else {
+                section.set(key, instance);
+            }
+        }
+    }
+
+    /**
+     * Copies all the values of a section, including nested sections and lists.
+     */
+    private static void copy(final @NotNull ConfigurationSection from, final @NotNull ConfigurationSection to) {
+        for (Map.Entry<String, Object> entry : from.getValues(false).entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof ConfigurationSection section) {
+                RegistryFiles.copy(section, to.createSection(entry.getKey()));
+            } else {
+                to.set(entry.getKey(), value instanceof List<?> list ? new ArrayList<>(list) : value);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package cz.jeme.programu.fuze.game;
+
+import cz.jeme.programu.fuze.Config;
+import cz.jeme.programu.fuze.item.impl.Gun;
+import cz.jeme.programu.fuze.util.Bullet;
+import cz.jeme.programu.fuze.util.MaterialTable;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.util.Vector;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Simulates the bullets of {@link Gun.Mode#SIMULATED} guns without any entities.
+ * <p>The state of all the bullets in flight is held in parallel primitive arrays (one slot per bullet)
+ * and stepped once per tick by the {@link FuzeTicker}. Every tick a bullet travels the segment given by its velocity,
+ * the segment is traced by a {@link BulletPath} (penetrating and ricocheting off blocks) and tested against the entities
+ * in an {@link EntityGrid} filled once per tick from the chunks the segments cross, then gravity and drag are applied to the velocity.</p>
+ * <p>Bullets are removed when they hit something, run out of their lifetime, leave the loaded chunks
+ * or when their shooter is no longer valid. Removing a bullet moves the last bullet into its slot.</p>
+ * <p>Must only be accessed from the main thread.</p>
+ */
+public enum BulletEngine {
+    /**
+     * The one and only {@link BulletEngine}.
+     */
+    INSTANCE;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int size = 0;
+    private double @NotNull [] x = new double[BulletEngine.INITIAL_CAPACITY];
+    private double @NotNull [] y = new double[BulletEngine.INITIAL_CAPACITY];
+    private double @NotNull [] z = new double[BulletEngine.INITIAL_CAPACITY];
+    private double @NotNull [] velocityX = new double[BulletEngine.INITIAL_CAPACITY];
+    private double @NotNull [] velocityY = new double[BulletEngine.INITIAL_CAPACITY];
+    private double @NotNull [] velocityZ = new double[BulletEngine.INITIAL_CAPACITY];
+    private double @NotNull [] gravity = new double[BulletEngine.INITIAL_CAPACITY];
+    private double @NotNull [] drag = new double[BulletEngine.INITIAL_CAPACITY];
+    private double @NotNull [] damage = new double[BulletEngine.INITIAL_CAPACITY];
+    private double @NotNull [] power = new double[BulletEngine.INITIAL_CAPACITY];
+    private int @NotNull [] gunId = new int[BulletEngine.INITIAL_CAPACITY];
+    private int @NotNull [] age = new int[BulletEngine.INITIAL_CAPACITY];
+    private int @NotNull [] lifetime = new int[BulletEngine.INITIAL_CAPACITY];
+    private @Nullable Entity @NotNull [] shooter = new Entity[BulletEngine.INITIAL_CAPACITY];
+    private @Nullable World @NotNull [] world = new World[BulletEngine.INITIAL_CAPACITY];
+    private final @NotNull EntityGrid grid = new EntityGrid();
+    private final @NotNull BulletPath path = new BulletPath();
+
+    /**
+     * Removes all the bullets in flight.
+     */
+    void clear() {
+        Arrays.fill(shooter, 0, size, null);
+        Arrays.fill(world, 0, size, null);
+        size = 0;
+        grid.clear();
+    }
+
+    /**
+     * Returns the number of bullets in flight.
+     *
+     * @return the number of bullets
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Fires a simulated bullet from the eyes of a player in the direction they are looking.
+     *
+     * @param player the shooter
+     * @param gun    the gun the bullet is fired from
+     * @param stats  the stats of the gun item
+     */
+    public void fire(final @NotNull Player player, final @NotNull Gun gun, final @NotNull Gun.Stats stats) {
+        if (size == x.length) grow();
+        Location eye = player.getEyeLocation();
+        Vector direction = eye.getDirection();
+        int i = size++;
+        x[i] = eye.getX();
+        y[i] = eye.getY();
+        z[i] = eye.getZ();
+        velocityX[i] = direction.getX() * stats.velocity();
+        velocityY[i] = direction.getY() * stats.velocity();
+        velocityZ[i] = direction.getZ() * stats.velocity();
+        gravity[i] = gun.getGravity();
+        drag[i] = gun.getDrag();
+        damage[i] = stats.damage();
+        power[i] = gun.getPenetration();
+        gunId[i] = gun.getId();
+        age[i] = 0;
+        lifetime[i] = gun.getLifetime();
+        shooter[i] = player;
+        world[i] = player.getWorld();
+    }
+
+    private void grow() {
+        int capacity = x.length * 2;
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        velocityX = Arrays.copyOf(velocityX, capacity);
+        velocityY = Arrays.copyOf(velocityY, capacity);
+        velocityZ = Arrays.copyOf(velocityZ, capacity);
+        gravity = Arrays.copyOf(gravity, capacity);
+        drag = Arrays.copyOf(drag, capacity);
+        damage = Arrays.copyOf(damage, capacity);
+        power = Arrays.copyOf(power, capacity);
+        gunId = Arrays.copyOf(gunId, capacity);
+        age = Arrays.copyOf(age, capacity);
+        lifetime = Arrays.copyOf(lifetime, capacity);
+        shooter = Arrays.copyOf(shooter, capacity);
+        world = Arrays.copyOf(world, capacity);
+    }
+
+    /**
+     * Steps all the bullets in flight by one tick.
+     */
+    void tick() {
+        if (size == 0) return;
+        // Index only the entities around the segments the bullets travel this tick
+        grid.clear();
+        for (int i = 0; i < size; i++) {
+            World world = this.world[i];
+            if (world == null) continue;
+            double endX = x[i] + velocityX[i];
+            double endZ = z[i] + velocityZ[i];
+            grid.addArea(world, Math.min(x[i], endX), Math.min(z[i], endZ), Math.max(x[i], endX), Math.max(z[i], endZ));
+        }
+        MaterialTable materials = Config.instance().getMaterials();
+
+        int i = 0;
+        while (i < size) {
+            if (step(i, materials)) {
+                i++;
+            } else {
+                remove(i); // The last bullet moved here, step it next
+            }
+        }
+    }
+
+    /**
+     * Steps a bullet by one tick.
+     *
+     * @return true when the bullet is still in flight otherwise false
+     */
+    private boolean step(final int i, final @NotNull MaterialTable materials) {
+        World world = this.world[i];
+        Entity shooter = this.shooter[i];
+        if (world == null || shooter == null || !shooter.isValid()) return false;
+        if (++age[i] > lifetime[i]) return false;
+
+        double speed = Math.sqrt(velocityX[i] * velocityX[i] + velocityY[i] * velocityY[i] + velocityZ[i] * velocityZ[i]);
+        if (speed > 0) {
+            path.start(x[i], y[i], z[i], velocityX[i] / speed, velocityY[i] / speed, velocityZ[i] / speed, power[i]);
+            LivingEntity target = path.travel(world, speed, shooter, grid, materials);
+            if (target != null) {
+                Bullet.damage(target, shooter, gunId[i], damage[i]);
+                return false;
+            }
+            if (path.isStopped()) return false;
+            x[i] = path.getX();
+            y[i] = path.getY();
+            z[i] = path.getZ();
+            // The direction changes when the bullet ricochets
+            velocityX[i] = path.getDirectionX() * speed;
+            velocityY[i] = path.getDirectionY() * speed;
+            velocityZ[i] = path.getDirectionZ() * speed;
+            power[i] = path.getPower();
+        }
+
+        double retained = 1 - drag[i];
+        velocityX[i] *= retained;
+        velocityY[i] = velocityY[i] * retained - gravity[i];
+        velocityZ[i] *= retained;
+        return true;
+    }
+
+    private void remove(final int i) {
+        int last = --size;
+        x[i] = x[last];
+        y[i] = y[last];
+        z[i] = z[last];
+        velocityX[i] = velocityX[last];
+        velocityY[i] = velocityY[last];
+        velocityZ[i] = velocityZ[last];
+        gravity[i] = gravity[last];
+        drag[i] = drag[last];
+        damage[i] = damage[last];
+        power[i] = power[last];
+        gunId[i] = gunId[last];
+        age[i] = age[last];
+        lifetime[i] = lifetime[last];
+        shooter[i] = shooter[last];
+        world[i] = world[last];
+        shooter[last] = null;
+        world[last] = null;
+    }
+}
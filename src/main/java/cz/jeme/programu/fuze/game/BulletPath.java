@@ -0,0 +1,343 @@
+package cz.jeme.programu.fuze.game;
+
+import cz.jeme.programu.fuze.util.MaterialTable;
+import org.bukkit.Bukkit;
+import org.bukkit.FluidCollisionMode;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.util.BoundingBox;
+import org.bukkit.util.RayTraceResult;
+import org.bukkit.util.Vector;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Traces the path of a bullet through the world, including penetration and ricochets.
+ * <p>Every block hit is looked up in a {@link MaterialTable}. Blocks the bullet has enough penetration power for
+ * are passed through (costing it the penetration cost of the block), breakable blocks passed through shatter.
+ * Other blocks either ricochet the bullet or stop it. The path is tested for entity hits piece by piece,
+ * between the block impacts.</p>
+ * <p>Shattering a block fires an {@link EntityChangeBlockEvent} of the shooter first, only as a check that protection
+ * plugins can cancel. A {@link org.bukkit.event.block.BlockBreakEvent} is deliberately not fired, even for player
+ * shooters, as plugins (jobs, block logging, anti-cheat) count it as a block mined by the player.
+ * The bullet passes through a block that was not broken.</p>
+ * <p>A path holds the state of one bullet at a time and is meant to be reused.
+ * Must only be accessed from the main thread.</p>
+ */
+public final class BulletPath {
+    /**
+     * The maximum number of block impacts handled in a single trace.
+     */
+    public static final int MAX_IMPACTS = 16;
+
+    /**
+     * The distance a bullet is moved past an impact, so the next trace does not hit the same block face again.
+     */
+    private static final double EPSILON = 1e-3;
+
+    private double x;
+    private double y;
+    private double z;
+    private double directionX;
+    private double directionY;
+    private double directionZ;
+    private double power;
+    private boolean stopped;
+
+    /**
+     * Starts a new path.
+     *
+     * @param x          the x coordinate of the bullet
+     * @param y          the y coordinate of the bullet
+     * @param z          the z coordinate of the bullet
+     * @param directionX the x component of the normalized direction of the bullet
+     * @param directionY the y component of the normalized direction of the bullet
+     * @param directionZ the z component of the normalized direction of the bullet
+     * @param power      the penetration power of the bullet
+     */
+    public void start(final double x, final double y, final double z,
+                      final double directionX, final double directionY, final double directionZ,
+                      final double power) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.directionX = directionX;
+        this.directionY = directionY;
+        this.directionZ = directionZ;
+        this.power = power;
+        stopped = false;
+    }
+
+    /**
+     * Moves the bullet along its path, testing entity hits by ray traces.
+     *
+     * @param world     the world of the bullet
+     * @param distance  the distance to travel in blocks
+     * @param shooter   the entity that can not be hit by the bullet
+     * @param materials the ballistic properties of blocks
+     * @return the first entity hit or null when no entity was hit
+     * @see BulletPath#travel(World, double, Entity, EntityGrid, MaterialTable)
+     */
+    public @Nullable LivingEntity travel(final @NotNull World world,
+                                         final double distance,
+                                         final @NotNull Entity shooter,
+                                         final @NotNull MaterialTable materials) {
+        return travel(world, distance, shooter, null, materials);
+    }
+
+    /**
+     * Moves the bullet along its path.
+     * <p>After the call, the position, direction and penetration power of the path are updated.
+     * When an entity is hit, a block stops the bullet or the bullet reaches an unloaded chunk, the path is stopped.</p>
+     *
+     * @param world     the world of the bullet
+     * @param distance  the distance to travel in blocks
+     * @param shooter   the entity that can not be hit by the bullet
+     * @param grid      the grid to test entity hits on the straight path against or null to test them by ray traces
+     * @param materials the ballistic properties of blocks
+     * @return the first entity hit or null when no entity was hit
+     */
+    @Nullable LivingEntity travel(final @NotNull World world,
+                                  final double distance,
+                                  final @NotNull Entity shooter,
+                                  final @Nullable EntityGrid grid,
+                                  final @NotNull MaterialTable materials) {
+        EntityGrid entities = grid;
+        double remaining = distance;
+        for (int impacts = 0; remaining > BulletPath.EPSILON; impacts++) {
+            if (impacts > BulletPath.MAX_IMPACTS) break;
+            // Never trace into unloaded chunks, the bullet is stopped at their border
+            double loaded = loadedDistance(world, remaining);
+            if (loaded <= 0) {
+                stopped = true;
+                return null;
+            }
+            boolean leaves = loaded < remaining;
+            double length = leaves ? loaded : remaining;
+            Location start = new Location(world, x, y, z);
+            Vector direction = new Vector(directionX, directionY, directionZ);
+            RayTraceResult blockHit = world.rayTraceBlocks(start, direction, length, FluidCollisionMode.NEVER, true);
+            // Only the entities in front of the hit block can be hit
+            double reach = blockHit == null ? length : blockHit.getHitPosition().distance(start.toVector());
+            LivingEntity target = entities == null
+                    ? BulletPath.traceEntity(world, start, direction, reach, shooter)
+                    : entities.raycast(world, x, y, z, directionX * reach, directionY * reach, directionZ * reach, shooter);
+            if (target != null) {
+                stopped = true;
+                return target;
+            }
+            advance(reach);
+            remaining -= reach;
+            if (blockHit == null) {
+                stopped = leaves;
+                return null;
+            }
+            Block block = blockHit.getHitBlock();
+            double previousX = directionX;
+            double previousY = directionY;
+            double previousZ = directionZ;
+            if (block == null || !impact(block, blockHit.getHitBlockFace(), shooter, materials)) {
+                stopped = true;
+                return null;
+            }
+            // The grid only covers the straight path, test the entities after a ricochet by ray traces
+            if (directionX != previousX || directionY != previousY || directionZ != previousZ) entities = null;
+            // Move past the impact, through the block when it was penetrated
+            double skip = block.getType().isAir() ? BulletPath.EPSILON : exit(block) + BulletPath.EPSILON;
+            advance(skip);
+            remaining -= skip;
+        }
+        return null;
+    }
+
+    /**
+     * Handles an impact into a block.
+     *
+     * @return true when the bullet continues otherwise false
+     */
+    private boolean impact(final @NotNull Block block,
+                           final @Nullable BlockFace face,
+                           final @NotNull Entity shooter,
+                           final @NotNull MaterialTable materials) {
+        Material type = block.getType();
+        double cost = materials.getPenetrationCost(type);
+        if (power >= cost) {
+            power -= cost;
+            if (materials.isBreakable(type)) BulletPath.shatter(block, shooter);
+            return true;
+        }
+        if (face == null || materials.isBreakable(type)) return false;
+        if (ThreadLocalRandom.current().nextDouble() >= materials.getRicochetChance(type)) return false;
+        // Reflect the direction by the normal of the hit face
+        int normalX = face.getModX();
+        int normalY = face.getModY();
+        int normalZ = face.getModZ();
+        double dot = directionX * normalX + directionY * normalY + directionZ * normalZ;
+        directionX -= 2 * dot * normalX;
+        directionY -= 2 * dot * normalY;
+        directionZ -= 2 * dot * normalZ;
+        return true;
+    }
+
+    /**
+     * Breaks a block hit by a bullet, unless the break is cancelled by another plugin.
+     */
+    private static void shatter(final @NotNull Block block, final @NotNull Entity shooter) {
+        EntityChangeBlockEvent event = new EntityChangeBlockEvent(shooter, block, Material.AIR.createBlockData());
+        Bukkit.getPluginManager().callEvent(event);
+        if (event.isCancelled()) return;
+        block.breakNaturally();
+    }
+
+    /**
+     * Returns the distance from the current position to where the path leaves the bounding box of the block.
+     * <p>Slabs, panes and other partial blocks are left as soon as their shape is, not at the border of the full cube.
+     * Returns 0 when the bullet ricocheted, as the direction then points out of the block,
+     * or when the block has no shape (it was shattered).</p>
+     */
+    private double exit(final @NotNull Block block) {
+        BoundingBox box = block.getBoundingBox();
+        if (box.getVolume() == 0) return 0;
+        double exit = Double.POSITIVE_INFINITY;
+        if (directionX != 0) exit = Math.min(exit, ((directionX > 0 ? box.getMaxX() : box.getMinX()) - x) / directionX);
+        if (directionY != 0) exit = Math.min(exit, ((directionY > 0 ? box.getMaxY() : box.getMinY()) - y) / directionY);
+        if (directionZ != 0) exit = Math.min(exit, ((directionZ > 0 ? box.getMaxZ() : box.getMinZ()) - z) / directionZ);
+        return Double.isFinite(exit) ? Math.max(exit, 0) : 0;
+    }
+
+    /**
+     * Returns the distance the bullet can travel in its direction before it enters an unloaded chunk.
+     * <p>Walks the chunks crossed by the path (2D DDA) and returns the distance to the border of the first unloaded one,
+     * 0 when the bullet is in an unloaded chunk already or the given distance when all the chunks are loaded.</p>
+     */
+    private double loadedDistance(final @NotNull World world, final double distance) {
+        int chunkX = (int) Math.floor(x) >> 4;
+        int chunkZ = (int) Math.floor(z) >> 4;
+        int endX = (int) Math.floor(x + directionX * distance) >> 4;
+        int endZ = (int) Math.floor(z + directionZ * distance) >> 4;
+        int stepX = Integer.signum(endX - chunkX);
+        int stepZ = Integer.signum(endZ - chunkZ);
+        double deltaX = stepX == 0 ? Double.POSITIVE_INFINITY : 16 / Math.abs(directionX);
+        double deltaZ = stepZ == 0 ? Double.POSITIVE_INFINITY : 16 / Math.abs(directionZ);
+        double nextX = stepX == 0 ? Double.POSITIVE_INFINITY : (((chunkX + (stepX > 0 ? 1 : 0)) << 4) - x) / directionX;
+        double nextZ = stepZ == 0 ? Double.POSITIVE_INFINITY : (((chunkZ + (stepZ > 0 ? 1 : 0)) << 4) - z) / directionZ;
+        int steps = Math.abs(endX - chunkX) + Math.abs(endZ - chunkZ);
+
+        double entered = 0;
+        for (int step = 0; ; step++) {
+            if (!world.isChunkLoaded(chunkX, chunkZ)) return entered;
+            if (step == steps) return distance;
+            if (nextX < nextZ) {
+                chunkX += stepX;
+                entered = nextX;
+                nextX += deltaX;
+            } else {
+                chunkZ += stepZ;
+                entered = nextZ;
+                nextZ += deltaZ;
+            }
+        }
+    }
+
+    private void advance(final double distance) {
+        x += directionX * distance;
+        y += directionY * distance;
+        z += directionZ * distance;
+    }
+
+    private static @Nullable LivingEntity traceEntity(final @NotNull World world,
+                                                      final @NotNull Location start,
+                                                      final @NotNull Vector direction,
+                                                      final double distance,
+                                                      final @NotNull Entity shooter) {
+        if (distance <= 0) return null;
+        RayTraceResult result = world.rayTraceEntities(
+                start,
+                direction,
+                distance,
+                0,
+                entity -> entity != shooter && entity instanceof LivingEntity
+        );
+        return result != null && result.getHitEntity() instanceof LivingEntity target ? target : null;
+    }
+
+    /**
+     * Returns whether the bullet was stopped by an entity or a block.
+     *
+     * @return true when the bullet was stopped otherwise false
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Returns the x coordinate of the bullet.
+     *
+     * @return the x coordinate
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y coordinate of the bullet.
+     *
+     * @return the y coordinate
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Returns the z coordinate of the bullet.
+     *
+     * @return the z coordinate
+     */
+    public double getZ() {
+        return z;
+    }
+
+    /**
+     * Returns the x component of the normalized direction of the bullet.
+     *
+     * @return the x component of the direction
+     */
+    public double getDirectionX() {
+        return directionX;
+    }
+
+    /**
+     * Returns the y component of the normalized direction of the bullet.
+     *
+     * @return the y component of the direction
+     */
+    public double getDirectionY() {
+        return directionY;
+    }
+
+    /**
+     * Returns the z component of the normalized direction of the bullet.
+     *
+     * @return the z component of the direction
+     */
+    public double getDirectionZ() {
+        return directionZ;
+    }
+
+    /**
+     * Returns the remaining penetration power of the bullet.
+     *
+     * @return the penetration power
+     */
+    public double getPower() {
+        return power;
+    }
+}
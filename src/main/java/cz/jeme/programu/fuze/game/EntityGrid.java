@@ -0,0 +1,338 @@
+package cz.jeme.programu.fuze.game;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A spatial hash of the living entities around some areas, used for bullet hit tests.
+ * <p>The entities are collected from the loaded chunks overlapping the areas added to the grid, each chunk once per build.
+ * Only the entities around the areas can be hit, so the areas must cover the segments queried.</p>
+ * <p>The entities are bucketed into vertical columns of {@link EntityGrid#CELL_SIZE} blocks, an entity is added to every
+ * column its bounding box overlaps. The bounding boxes are cached in primitive arrays when they are added.</p>
+ * <p>A query walks only the columns crossed by a segment and tests the entities in them using the slab method,
+ * so its cost scales with the number of nearby entities rather than with all the loaded entities.</p>
+ * <p>The grid is meant to be cleared and filled again once per tick, nothing is allocated by queries.
+ * Must only be accessed from the main thread.</p>
+ */
+final class EntityGrid {
+    /**
+     * The width of the columns of the grid in blocks.
+     */
+    static final double CELL_SIZE = 4;
+
+    /**
+     * The padding of added areas in blocks.
+     * <p>Entities are collected by the chunk their position is in,
+     * the padding catches the entities standing outside an area with their bounding box sticking into it.</p>
+     */
+    static final double MARGIN = 2;
+
+    /**
+     * The bit marking the keys of collected chunks in the hash table, column keys never have it set.
+     */
+    private static final long CHUNK_BIT = 1L << 63;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    // Worlds of the current build
+    private int worldCount = 0;
+    private @Nullable World @NotNull [] worlds = new World[4];
+
+    // Entities
+    private int entityCount = 0;
+    private @Nullable LivingEntity @NotNull [] entities = new LivingEntity[EntityGrid.INITIAL_CAPACITY];
+    private double @NotNull [] minX = new double[EntityGrid.INITIAL_CAPACITY];
+    private double @NotNull [] minY = new double[EntityGrid.INITIAL_CAPACITY];
+    private double @NotNull [] minZ = new double[EntityGrid.INITIAL_CAPACITY];
+    private double @NotNull [] maxX = new double[EntityGrid.INITIAL_CAPACITY];
+    private double @NotNull [] maxY = new double[EntityGrid.INITIAL_CAPACITY];
+    private double @NotNull [] maxZ = new double[EntityGrid.INITIAL_CAPACITY];
+    private int @NotNull [] visited = new int[EntityGrid.INITIAL_CAPACITY];
+
+    // Column entries, linked lists of entities per column
+    private int entryCount = 0;
+    private int @NotNull [] entryEntity = new int[EntityGrid.INITIAL_CAPACITY];
+    private int @NotNull [] entryNext = new int[EntityGrid.INITIAL_CAPACITY];
+
+    // Open addressing hash table of columns and collected chunks, slots of older builds are stale
+    private long @NotNull [] cellKeys = new long[EntityGrid.INITIAL_CAPACITY * 2];
+    private int @NotNull [] cellHeads = new int[EntityGrid.INITIAL_CAPACITY * 2];
+    private int @NotNull [] cellBuilds = new int[EntityGrid.INITIAL_CAPACITY * 2];
+    private int cellCount = 0;
+    private int build = 0;
+    private int query = 0;
+
+    /**
+     * Removes all the entities from the grid, starting a new build.
+     */
+    void clear() {
+        Arrays.fill(entities, 0, entityCount, null);
+        Arrays.fill(worlds, 0, worldCount, null);
+        entityCount = 0;
+        entryCount = 0;
+        cellCount = 0;
+        worldCount = 0;
+        if (++build == 0) { // Overflow, clear the table to not mistake stale slots for fresh ones
+            Arrays.fill(cellBuilds, 0);
+            build = 1;
+        }
+    }
+
+    /**
+     * Adds the living entities around an area to the grid.
+     * <p>The entities of every loaded chunk overlapping the area padded by {@link EntityGrid#MARGIN} are added,
+     * unless the chunk was already collected in this build. Unloaded chunks are skipped.</p>
+     *
+     * @param world the world of the area
+     * @param minX  the minimum x coordinate of the area
+     * @param minZ  the minimum z coordinate of the area
+     * @param maxX  the maximum x coordinate of the area
+     * @param maxZ  the maximum z coordinate of the area
+     */
+    void addArea(final @NotNull World world,
+                 final double minX, final double minZ,
+                 final double maxX, final double maxZ) {
+        int worldIndex = indexOf(world);
+        if (worldIndex == -1) {
+            if (worldCount == worlds.length) worlds = Arrays.copyOf(worlds, worlds.length * 2);
+            worldIndex = worldCount++;
+            worlds[worldIndex] = world;
+        }
+        int fromX = (int) Math.floor(minX - EntityGrid.MARGIN) >> 4;
+        int toX = (int) Math.floor(maxX + EntityGrid.MARGIN) >> 4;
+        int fromZ = (int) Math.floor(minZ - EntityGrid.MARGIN) >> 4;
+        int toZ = (int) Math.floor(maxZ + EntityGrid.MARGIN) >> 4;
+        for (int chunkX = fromX; chunkX <= toX; chunkX++) {
+            for (int chunkZ = fromZ; chunkZ <= toZ; chunkZ++) {
+                if (!world.isChunkLoaded(chunkX, chunkZ)) continue;
+                // A chunk already in the table was collected for another area
+                int collected = cellCount;
+                slot(EntityGrid.key(worldIndex, chunkX, chunkZ) | EntityGrid.CHUNK_BIT, true);
+                if (cellCount == collected) continue;
+                Chunk chunk = world.getChunkAt(chunkX, chunkZ);
+                for (Entity entity : chunk.getEntities()) {
+                    if (entity instanceof LivingEntity living) add(worldIndex, living);
+                }
+            }
+        }
+    }
+
+    private void add(final int world, final @NotNull LivingEntity entity) {
+        if (entityCount == entities.length) growEntities();
+        int i = entityCount++;
+        BoundingBox box = entity.getBoundingBox();
+        entities[i] = entity;
+        minX[i] = box.getMinX();
+        minY[i] = box.getMinY();
+        minZ[i] = box.getMinZ();
+        maxX[i] = box.getMaxX();
+        maxY[i] = box.getMaxY();
+        maxZ[i] = box.getMaxZ();
+        visited[i] = 0;
+        int fromX = EntityGrid.cell(minX[i]);
+        int toX = EntityGrid.cell(maxX[i]);
+        int fromZ = EntityGrid.cell(minZ[i]);
+        int toZ = EntityGrid.cell(maxZ[i]);
+        for (int cellX = fromX; cellX <= toX; cellX++) {
+            for (int cellZ = fromZ; cellZ <= toZ; cellZ++) {
+                if (entryCount == entryEntity.length) growEntries();
+                int slot = slot(EntityGrid.key(world, cellX, cellZ), true);
+                int entry = entryCount++;
+                entryEntity[entry] = i;
+                entryNext[entry] = cellHeads[slot];
+                cellHeads[slot] = entry;
+            }
+        }
+    }
+
+    /**
+     * Finds the first entity hit by a segment.
+     *
+     * @param world   the world of the segment
+     * @param x       the x coordinate of the start of the segment
+     * @param y       the y coordinate of the start of the segment
+     * @param z       the z coordinate of the start of the segment
+     * @param dx      the x length of the segment
+     * @param dy      the y length of the segment
+     * @param dz      the z length of the segment
+     * @param ignored the entity that can not be hit, e.g. the shooter
+     * @return the first valid entity hit by the segment or null when no entity is hit
+     */
+    @Nullable LivingEntity raycast(final @NotNull World world,
+                                   final double x, final double y, final double z,
+                                   final double dx, final double dy, final double dz,
+                                   final @Nullable Entity ignored) {
+        int worldIndex = indexOf(world);
+        if (worldIndex == -1 || entityCount == 0) return null;
+        if (++query == 0) { // Overflow, forget all the visits
+            Arrays.fill(visited, 0);
+            query = 1;
+        }
+
+        // Walk the columns crossed by the segment (2D DDA)
+        int cellX = EntityGrid.cell(x);
+        int cellZ = EntityGrid.cell(z);
+        int endX = EntityGrid.cell(x + dx);
+        int endZ = EntityGrid.cell(z + dz);
+        int stepX = Integer.signum(endX - cellX);
+        int stepZ = Integer.signum(endZ - cellZ);
+        double deltaX = stepX == 0 ? Double.POSITIVE_INFINITY : EntityGrid.CELL_SIZE / Math.abs(dx);
+        double deltaZ = stepZ == 0 ? Double.POSITIVE_INFINITY : EntityGrid.CELL_SIZE / Math.abs(dz);
+        double nextX = stepX == 0 ? Double.POSITIVE_INFINITY : ((cellX + (stepX > 0 ? 1 : 0)) * EntityGrid.CELL_SIZE - x) / dx;
+        double nextZ = stepZ == 0 ? Double.POSITIVE_INFINITY : ((cellZ + (stepZ > 0 ? 1 : 0)) * EntityGrid.CELL_SIZE - z) / dz;
+        int steps = Math.abs(endX - cellX) + Math.abs(endZ - cellZ);
+
+        LivingEntity hit = null;
+        double hitFraction = Double.POSITIVE_INFINITY;
+        for (int step = 0; ; step++) {
+            int slot = slot(EntityGrid.key(worldIndex, cellX, cellZ), false);
+            for (int entry = slot == -1 ? -1 : cellHeads[slot]; entry != -1; entry = entryNext[entry]) {
+                int i = entryEntity[entry];
+                if (visited[i] == query) continue;
+                visited[i] = query;
+                double fraction = intersect(i, x, y, z, dx, dy, dz);
+                if (fraction >= hitFraction) continue;
+                LivingEntity entity = entities[i];
+                if (entity == null || entity == ignored || !entity.isValid()) continue;
+                hit = entity;
+                hitFraction = fraction;
+            }
+            // Hits in the visited columns come before anything in the next column
+            if (step == steps || hitFraction <= Math.min(nextX, nextZ)) break;
+            if (nextX < nextZ) {
+                cellX += stepX;
+                nextX += deltaX;
+            } else {
+                cellZ += stepZ;
+                nextZ += deltaZ;
+            }
+        }
+        return hit;
+    }
+
+    /**
+     * Intersects a segment with the cached bounding box of an entity using the slab method.
+     *
+     * @return the fraction of the segment where it enters the box or {@link Double#POSITIVE_INFINITY} when it misses it
+     */
+    private double intersect(final int i,
+                             final double x, final double y, final double z,
+                             final double dx, final double dy, final double dz) {
+        double enter = 0;
+        double exit = 1;
+        // X slab
+        if (dx == 0) {
+            if (x < minX[i] || x > maxX[i]) return Double.POSITIVE_INFINITY;
+        } else {
+            double near = (minX[i] - x) / dx;
+            double far = (maxX[i] - x) / dx;
+            enter = Math.max(enter, Math.min(near, far));
+            exit = Math.min(exit, Math.max(near, far));
+        }
+        // Y slab
+        if (dy == 0) {
+            if (y < minY[i] || y > maxY[i]) return Double.POSITIVE_INFINITY;
+        } else {
+            double near = (minY[i] - y) / dy;
+            double far = (maxY[i] - y) / dy;
+            enter = Math.max(enter, Math.min(near, far));
+            exit = Math.min(exit, Math.max(near, far));
+        }
+        // Z slab
+        if (dz == 0) {
+            if (z < minZ[i] || z > maxZ[i]) return Double.POSITIVE_INFINITY;
+        } else {
+            double near = (minZ[i] - z) / dz;
+            double far = (maxZ[i] - z) / dz;
+            enter = Math.max(enter, Math.min(near, far));
+            exit = Math.min(exit, Math.max(near, far));
+        }
+        return enter <= exit ? enter : Double.POSITIVE_INFINITY;
+    }
+
+    private int indexOf(final @NotNull World world) {
+        for (int i = 0; i < worldCount; i++) {
+            if (worlds[i] == world) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of a column in the hash table.
+     *
+     * @param key    the key of the column
+     * @param create whether to create the column when it does not exist yet
+     * @return the slot of the column or -1 when it does not exist and should not be created
+     */
+    private int slot(final long key, final boolean create) {
+        int mask = cellKeys.length - 1;
+        int slot = (int) EntityGrid.mix(key) & mask;
+        while (cellBuilds[slot] == build) {
+            if (cellKeys[slot] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        if (!create) return -1;
+        if ((cellCount + 1) * 2 > cellKeys.length) {
+            growCells();
+            return slot(key, true);
+        }
+        cellCount++;
+        cellKeys[slot] = key;
+        cellHeads[slot] = -1;
+        cellBuilds[slot] = build;
+        return slot;
+    }
+
+    private void growCells() {
+        long[] keys = cellKeys;
+        int[] heads = cellHeads;
+        int[] builds = cellBuilds;
+        cellKeys = new long[keys.length * 2];
+        cellHeads = new int[keys.length * 2];
+        cellBuilds = new int[keys.length * 2];
+        cellCount = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (builds[i] != build) continue;
+            int slot = slot(keys[i], true);
+            cellHeads[slot] = heads[i];
+        }
+    }
+
+    private void growEntities() {
+        int capacity = entities.length * 2;
+        entities = Arrays.copyOf(entities, capacity);
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        minZ = Arrays.copyOf(minZ, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        maxZ = Arrays.copyOf(maxZ, capacity);
+        visited = Arrays.copyOf(visited, capacity);
+    }
+
+    private void growEntries() {
+        int capacity = entryEntity.length * 2;
+        entryEntity = Arrays.copyOf(entryEntity, capacity);
+        entryNext = Arrays.copyOf(entryNext, capacity);
+    }
+
+    private static int cell(final double coordinate) {
+        return (int) Math.floor(coordinate / EntityGrid.CELL_SIZE);
+    }
+
+    private static long key(final int world, final int cellX, final int cellZ) {
+        return (long) world << 48 | (cellX & 0xFFFFFFL) << 24 | cellZ & 0xFFFFFFL;
+    }
+
+    private static long mix(final long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return mixed ^ mixed >>> 32;
+    }
+}
@@ -0,0 +1,52 @@
+package cz.jeme.programu.fuze.game;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The one repeating task of the Fuze plugin.
+ * <p>Every tick the held triggers of automatic guns are processed first ({@link Shooters}),
+ * then the simulated bullets are stepped ({@link BulletEngine}), so bullets fired this tick move right away.
+ * Nothing in the plugin schedules tasks per player or per bullet.</p>
+ */
+public enum FuzeTicker {
+    /**
+     * The one and only {@link FuzeTicker}.
+     */
+    INSTANCE;
+
+    private @Nullable BukkitTask task;
+
+    /**
+     * Starts the ticker.
+     * <p>This method should not be called outside the Fuze API.</p>
+     *
+     * @param plugin the plugin to schedule the task with
+     * @throws IllegalStateException when the ticker is already started
+     */
+    public void start(final @NotNull Plugin plugin) {
+        if (task != null) throw new IllegalStateException("The ticker is already started!");
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+    }
+
+    /**
+     * Stops the ticker, releasing all the held triggers and removing all the bullets in flight.
+     * <p>This method should not be called outside the Fuze API.</p>
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        Shooters.INSTANCE.releaseTriggers();
+        BulletEngine.INSTANCE.clear();
+    }
+
+    private void tick() {
+        Shooters.INSTANCE.tick(Bukkit.getCurrentTick(), System.nanoTime());
+        BulletEngine.INSTANCE.tick();
+    }
+}
@@ -0,0 +1,203 @@
+package cz.jeme.programu.fuze.game;
+
+import cz.jeme.programu.fuze.item.impl.Gun;
+import cz.jeme.programu.fuze.util.EntitySlots;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Holds the per-player shooting state of guns in primitive tables.
+ * <p>Every player who shot is given a compact slot (see {@link EntitySlots}), the state of the player is stored
+ * at that slot of the tables, so looking up the state costs a few array reads and never allocates.</p>
+ * <p>Players holding the trigger of an automatic gun are kept in the firing set, a dense array of slots processed
+ * every tick by the {@link FuzeTicker}, which fires their guns at the rate given by the shoot cooldown.
+ * Clients repeat the use of an item roughly every 4 ticks while the use key is held, so the trigger counts as held
+ * for {@link Shooters#TRIGGER_HOLD_TICKS} after the last use. Switching the held slot releases the trigger,
+ * so does dropping or swapping the gun, the held item is resolved again before every shot.</p>
+ * <p>Slots are released when the player quits and reused by the next players.
+ * Must only be accessed from the main thread.</p>
+ */
+public enum Shooters {
+    /**
+     * The one and only {@link Shooters}.
+     */
+    INSTANCE;
+
+    /**
+     * The number of ticks a trigger counts as held after the last use of the gun.
+     */
+    public static final int TRIGGER_HOLD_TICKS = 5;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int FREE = -1;
+
+    private final @NotNull EntitySlots slots = new EntitySlots();
+
+    // Slot tables
+    private long @NotNull [] nextShot = new long[Shooters.INITIAL_CAPACITY];
+    private @Nullable Player @NotNull [] players = new Player[Shooters.INITIAL_CAPACITY];
+    private @Nullable Gun @NotNull [] triggerGuns = new Gun[Shooters.INITIAL_CAPACITY];
+    private @Nullable Gun.Stats @NotNull [] triggerStats = new Gun.Stats[Shooters.INITIAL_CAPACITY];
+    private int @NotNull [] triggerHeldSlot = new int[Shooters.INITIAL_CAPACITY];
+    private int @NotNull [] triggerReleaseTick = new int[Shooters.INITIAL_CAPACITY];
+    private int @NotNull [] firingIndex = Shooters.freeTable(Shooters.INITIAL_CAPACITY);
+
+    // The firing set, slots of the players holding a trigger
+    private int @NotNull [] firing = new int[Shooters.INITIAL_CAPACITY];
+    private int firingCount = 0;
+
+    /**
+     * Tries to start a shot of a player, enforcing the shoot cooldown of the gun.
+     *
+     * @param player   the shooter
+     * @param now      the current time from {@link System#nanoTime()}
+     * @param cooldown the shoot cooldown of the gun in milliseconds
+     * @return true when the player may shoot, the cooldown then starts, otherwise false
+     */
+    public boolean tryShoot(final @NotNull Player player, final long now, final int cooldown) {
+        int slot = slot(player, now);
+        if (now - nextShot[slot] < 0) return false;
+        nextShot[slot] = now + cooldown * 1_000_000L;
+        return true;
+    }
+
+    /**
+     * Keeps holding the trigger of an automatic gun, when the player is already holding it.
+     *
+     * @param player the shooter
+     * @param gun    the automatic gun
+     * @param tick   the current tick
+     * @return true when the player was holding the trigger of the gun otherwise false
+     */
+    public boolean holdTrigger(final @NotNull Player player, final @NotNull Gun gun, final int tick) {
+        int slot = slots.get(player.getEntityId());
+        if (slot == EntitySlots.NONE || firingIndex[slot] == Shooters.FREE || triggerGuns[slot] != gun) return false;
+        triggerReleaseTick[slot] = tick + Shooters.TRIGGER_HOLD_TICKS;
+        return true;
+    }
+
+    /**
+     * Starts holding the trigger of an automatic gun, adding the player to the firing set.
+     * <p>The gun keeps firing every tick its shoot cooldown allows until the trigger is released.</p>
+     *
+     * @param player the shooter
+     * @param gun    the automatic gun
+     * @param stats  the stats of the gun item
+     * @param tick   the current tick
+     * @throws IllegalStateException when the player did not try to shoot before, see {@link Shooters#tryShoot(Player, long, int)}
+     */
+    public void pullTrigger(final @NotNull Player player, final @NotNull Gun gun, final @NotNull Gun.Stats stats, final int tick) {
+        int slot = slots.get(player.getEntityId());
+        if (slot == EntitySlots.NONE)
+            throw new IllegalStateException("Player " + player.getName() + " did not try to shoot yet!");
+        players[slot] = player;
+        triggerGuns[slot] = gun;
+        triggerStats[slot] = stats;
+        triggerHeldSlot[slot] = player.getInventory().getHeldItemSlot();
+        triggerReleaseTick[slot] = tick + Shooters.TRIGGER_HOLD_TICKS;
+        if (firingIndex[slot] != Shooters.FREE) return;
+        firingIndex[slot] = firingCount;
+        firing[firingCount++] = slot;
+    }
+
+    /**
+     * Fires the guns of all the players holding a trigger.
+     *
+     * @param tick the current tick
+     * @param now  the current time from {@link System#nanoTime()}
+     */
+    void tick(final int tick, final long now) {
+        int i = 0;
+        while (i < firingCount) {
+            int slot = firing[i];
+            Player player = players[slot];
+            Gun gun = triggerGuns[slot];
+            Gun.Stats stats = triggerStats[slot];
+            if (player == null || gun == null || stats == null
+                || tick - triggerReleaseTick[slot] > 0
+                || !player.isValid()
+                || player.getInventory().getHeldItemSlot() != triggerHeldSlot[slot]) {
+                releaseTrigger(slot); // The last slot of the firing set moved here, process it next
+                continue;
+            }
+            if (now - nextShot[slot] >= 0) {
+                // Resolved only before a shot, the gun could have been dropped or swapped in the same slot
+                if (Gun.resolve(player.getInventory().getItemInMainHand()).orElse(null) != gun) {
+                    releaseTrigger(slot);
+                    continue;
+                }
+                nextShot[slot] = now + gun.getShootCooldown() * 1_000_000L;
+                gun.fire(player, stats);
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Releases all the held triggers.
+     */
+    void releaseTriggers() {
+        while (firingCount > 0)
+            releaseTrigger(firing[firingCount - 1]);
+    }
+
+    private void releaseTrigger(final int slot) {
+        int index = firingIndex[slot];
+        if (index == Shooters.FREE) return;
+        int last = firing[--firingCount];
+        firing[index] = last;
+        firingIndex[last] = index;
+        firingIndex[slot] = Shooters.FREE;
+        players[slot] = null;
+        triggerGuns[slot] = null;
+        triggerStats[slot] = null;
+    }
+
+    /**
+     * Releases the slot of a player, called when the player quits.
+     * <p>This method should not be called outside the Fuze API.</p>
+     *
+     * @param player the player
+     */
+    public void release(final @NotNull Player player) {
+        int slot = slots.release(player.getEntityId());
+        if (slot != EntitySlots.NONE) releaseTrigger(slot);
+    }
+
+    /**
+     * Returns the slot of a player, assigning a new one when the player has none yet.
+     * <p>New slots are ready to shoot at the provided time.</p>
+     */
+    private int slot(final @NotNull Player player, final long now) {
+        int id = player.getEntityId();
+        int slot = slots.get(id);
+        if (slot != EntitySlots.NONE) return slot;
+        slot = slots.assign(id);
+        if (slot >= nextShot.length) grow();
+        nextShot[slot] = now;
+        return slot;
+    }
+
+    private void grow() {
+        int length = nextShot.length;
+        int capacity = length * 2;
+        nextShot = Arrays.copyOf(nextShot, capacity);
+        players = Arrays.copyOf(players, capacity);
+        triggerGuns = Arrays.copyOf(triggerGuns, capacity);
+        triggerStats = Arrays.copyOf(triggerStats, capacity);
+        triggerHeldSlot = Arrays.copyOf(triggerHeldSlot, capacity);
+        triggerReleaseTick = Arrays.copyOf(triggerReleaseTick, capacity);
+        firingIndex = Arrays.copyOf(firingIndex, capacity);
+        Arrays.fill(firingIndex, length, capacity, Shooters.FREE);
+        firing = Arrays.copyOf(firing, capacity);
+    }
+
+    private static int @NotNull [] freeTable(final int size) {
+        int[] table = new int[size];
+        Arrays.fill(table, Shooters.FREE);
+        return table;
+    }
+}
@@ -1,6 +1,5 @@
 package cz.jeme.programu.fuze.item;
 
-import cz.jeme.programu.fuze.item.event.EventManager;
 import cz.jeme.programu.fuze.item.impl.Ammo;
 import cz.jeme.programu.fuze.item.impl.Gun;
 import cz.jeme.programu.fuze.item.loot.Rarity;
@@ -8,24 +7,24 @@ import cz.jeme.programu.fuze.item.storage.FuzePersistentData;
 import cz.jeme.programu.fuze.item.storage.PersistentData;
 import cz.jeme.programu.fuze.util.Messages;
 import net.kyori.adventure.text.Component;
-import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Represents a custom item in the Fuze plugin.
  * <p>This class is meant to be inherited by different concrete items.</p>
  * e.g. {@link Gun}, {@link Ammo}...
- * <p>Every item has to contain a constructor matching the {@link FuzeItem#FuzeItem(ConfigurationSection)} and has to be registered using {@link ItemManager#registerItem(Class, String)}.</p>
+ * <p>Every item has to contain a constructor matching the {@link FuzeItem#FuzeItem(ConfigurationSection)} and has to be registered using {@link ItemRegistry.Builder#registerItem(Class, String)}.</p>
  * <p>Every item should contain static methods {@code valueOf(String key)}, {@code valueOf{ItemStack item}},
- * {@code exists(String key)} and {@code exists(ItemStack item)}.
+ * {@code exists(String key)}, {@code exists(ItemStack item)} and {@code resolve(ItemStack item)}.
  */
 public abstract class FuzeItem implements Keyable {
     /**
@@ -67,10 +66,8 @@ public abstract class FuzeItem implements Keyable {
      * @throws IllegalArgumentException when the key data stored inside the ItemStack is not valid
      */
     public static @NotNull FuzeItem valueOf(final @NotNull ItemStack item) {
-        Optional<String> key = FuzeItem.KEY.read(item);
-        if (key.isEmpty())
-            throw new IllegalArgumentException("The provided item is not a fuze item!");
-        return FuzeItem.valueOf(key.get());
+        return FuzeItem.resolve(item)
+                .orElseThrow(() -> new IllegalArgumentException("The provided item is not a fuze item!"));
     }
 
     /**
@@ -84,10 +81,11 @@ public abstract class FuzeItem implements Keyable {
      *                                  when the item is not instance of the provided class
      */
     public static <T extends FuzeItem> @NotNull T valueOf(final @NotNull ItemStack item, final @NotNull Class<T> itemClass) {
-        Optional<String> key = FuzeItem.KEY.read(item);
-        if (key.isEmpty())
-            throw new IllegalArgumentException("The provided item is not a fuze item!");
-        return FuzeItem.valueOf(key.get(), itemClass);
+        FuzeItem fuzeItem = FuzeItem.valueOf(item);
+        if (!itemClass.isInstance(fuzeItem))
+            throw new IllegalArgumentException("Item \"%s\" is not instance of \"%s\"!"
+                    .formatted(fuzeItem.getKey(), itemClass.getName()));
+        return itemClass.cast(fuzeItem);
     }
 
     /**
@@ -120,9 +118,7 @@ public abstract class FuzeItem implements Keyable {
      * @return true when the ItemStack is a fuze item otherwise false
      */
     public static boolean exists(final @Nullable ItemStack item) {
-        if (item == null) return false;
-        Optional<String> key = FuzeItem.KEY.read(item);
-        return key.filter(FuzeItem::exists).isPresent();
+        return FuzeItem.resolve(item).isPresent();
     }
 
     /**
@@ -133,13 +129,55 @@ public abstract class FuzeItem implements Keyable {
      * @return true when the ItemStack is a fuze item and is instance of the provided class otherwise false
      */
     public static boolean exists(final @Nullable ItemStack item, final @NotNull Class<? extends FuzeItem> itemClass) {
-        if (item == null) return false;
-        Optional<String> key = FuzeItem.KEY.read(item);
-        return key.filter(value -> FuzeItem.exists(value, itemClass)).isPresent();
+        return FuzeItem.resolve(item, itemClass).isPresent();
     }
 
+    /**
+     * Resolves the fuze item of an {@link ItemStack}.
+     * <p>Unlike calling {@link FuzeItem#exists(ItemStack)} followed by {@link FuzeItem#valueOf(ItemStack)},
+     * this reads the id data just once. ItemStacks without any meta (e.g. plain blocks) are rejected
+     * without copying the meta at all.</p>
+     *
+     * @param item the ItemStack to read the id from
+     * @return the fuze item of the ItemStack or an empty optional when the ItemStack is not a fuze item
+     */
+    public static @NotNull Optional<? extends FuzeItem> resolve(final @Nullable ItemStack item) {
+        // ItemStack#getItemMeta() copies the whole meta, ItemStack#hasItemMeta() doesn't
+        if (item == null || !item.hasItemMeta()) return Optional.empty();
+        PersistentDataContainer container = item.getItemMeta().getPersistentDataContainer();
+        Optional<Integer> id = FuzeItem.ID.read(container);
+        if (id.isPresent()) return ItemManager.INSTANCE.getItemById(id.get());
+        // Items created before item ids were introduced only store the key
+        return FuzeItem.KEY.read(container).flatMap(ItemManager.INSTANCE::getItemByKey);
+    }
+
+    /**
+     * Resolves the fuze item of an {@link ItemStack}.
+     * <p>Unlike calling {@link FuzeItem#exists(ItemStack, Class)} followed by {@link FuzeItem#valueOf(ItemStack, Class)},
+     * this reads the id data just once. ItemStacks without any meta (e.g. plain blocks) are rejected
+     * without copying the meta at all.</p>
+     *
+     * @param item      the ItemStack to read the id from
+     * @param itemClass the fuze item class
+     * @param <T>       the fuze item
+     * @return the fuze item of the ItemStack or an empty optional when the ItemStack is not a fuze item
+     * or when the item is not instance of the provided class
+     */
+    public static <T extends FuzeItem> @NotNull Optional<T> resolve(final @Nullable ItemStack item, final @NotNull Class<T> itemClass) {
+        return FuzeItem.resolve(item)
+                .filter(itemClass::isInstance)
+                .map(itemClass::cast);
+    }
+
+    /**
+     * Id data storage.
+     * <p>Every fuze item stores its id (see {@link FuzeItem#getId()}).</p>
+     */
+    public static final @NotNull PersistentData<Integer, Integer> ID = new FuzePersistentData<>("item_id", PersistentData.INTEGER);
+
     /**
      * Key data storage.
+     * <p>No longer written, only read from items created before {@link FuzeItem#ID} was introduced.</p>
      */
     public static final @NotNull PersistentData<String, String> KEY = new FuzePersistentData<>("item_key", PersistentData.STRING);
 
@@ -155,6 +193,12 @@ public abstract class FuzeItem implements Keyable {
      */
     protected final @NotNull String key;
 
+    /**
+     * The unique id of this item.
+     * <p>Assigned by {@link ItemManager} to the item key, dense and stable across reloads and restarts.</p>
+     */
+    protected final int id;
+
     /**
      * The display name of this item.
      * <p>Read from the {@link ConfigurationSection} and then deserialized ({@link Messages#deserialize(String)}).</p>
@@ -182,7 +226,7 @@ public abstract class FuzeItem implements Keyable {
     /**
      * Initializes an item.
      * <p><b>This constructor and constructors of this classes inheritors should never be called manually!</b></p>
-     * <p>Items are initialized automatically using reflection in {@link ItemManager} during item registration!</p>
+     * <p>Items are initialized automatically using reflection in {@link ItemRegistry.Builder} during item registration!</p>
      *
      * @param section the {@link ConfigurationSection} of the item instance in config
      * @throws IllegalArgumentException when the section name (item key) doesn't match [a-z0-9_.-]
@@ -200,6 +244,7 @@ public abstract class FuzeItem implements Keyable {
                             .formatted(tempKey)
             );
         key = tempKey;
+        id = ItemManager.INSTANCE.assignId(key);
 
         name = Messages.deserialize(requireConfigString("name"));
 
@@ -208,14 +253,10 @@ public abstract class FuzeItem implements Keyable {
         material = getMaterial(section);
 
         item = new ItemStack(material);
-        ItemMeta meta = item.getItemMeta();
-        if (meta == null) meta = Bukkit.getItemFactory().getItemMeta(material);
-        FuzeItem.KEY.write(meta, key);
-        meta.displayName(Messages.deserialize("<!i>").append(name));
-        item.setItemMeta(meta);
-
-        // Register all events
-        EventManager.INSTANCE.registerEventsTree(this, false);
+        PersistentData.batch(item)
+                .write(FuzeItem.ID, id)
+                .editMeta(meta -> meta.displayName(Messages.deserialize("<!i>").append(name)))
+                .commit();
     }
 
     /**
@@ -306,6 +347,37 @@ public abstract class FuzeItem implements Keyable {
         return key;
     }
 
+    /**
+     * Returns the id of this item.
+     * <p>Ids are dense, so they can be used to index arrays.</p>
+     *
+     * @return the id
+     */
+    public final int getId() {
+        return id;
+    }
+
+    /**
+     * Resolves the references of this item to other items, e.g. the ammo of a gun.
+     * <p>Called once after this item and all the items of the item types it depends on were constructed.
+     * References should be resolved here rather than in the constructor, since items are constructed in parallel.</p>
+     * <p>This method should never be called manually!</p>
+     *
+     * @throws IllegalArgumentException when a referenced item does not exist
+     */
+    protected void link() {
+    }
+
+    /**
+     * Returns the keys of all items this item depends on, e.g. the ammo of a gun.
+     * <p>When a dependency is rebuilt during a reload, this item is rebuilt as well.</p>
+     *
+     * @return the keys of all items this item depends on
+     */
+    public @NotNull Set<String> getDependencies() {
+        return Set.of();
+    }
+
     /**
      * Returns the display name of this item.
      *
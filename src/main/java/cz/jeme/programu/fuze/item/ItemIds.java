@@ -0,0 +1,130 @@
+package cz.jeme.programu.fuze.item;
+
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns dense integer ids to item keys.
+ * <p>Every item key gets the next free id the first time it is registered.
+ * The mapping is persisted (the index of a key in the saved list is its id),
+ * so the ids stored inside items and bullets stay valid across reloads and restarts.
+ * Ids of items that were removed from the config are never reused.</p>
+ * <p>Ids must never be assigned again, the items in inventories would resolve to different items.
+ * The mapping is therefore written atomically to the file and to a backup file next to it.
+ * A missing file is restored from the backup, an unreadable one fails the reload.</p>
+ */
+final class ItemIds {
+    private static final @NotNull String PATH = "items";
+
+    private final @NotNull File file;
+    private final @NotNull File backup;
+    private final @NotNull List<String> keys = new ArrayList<>();
+    private final @NotNull Map<String, Integer> ids = new HashMap<>();
+    private boolean dirty = false;
+
+    /**
+     * Loads the id mapping from a file.
+     * <p>When the file does not exist, the mapping is restored from the backup file.
+     * When neither of them exists, the mapping starts empty. An unreadable file is never replaced.</p>
+     *
+     * @param file the file to load the mapping from and later save it to
+     * @throws IllegalStateException when the file (or the backup file when restoring) could not be read or parsed
+     */
+    ItemIds(final @NotNull File file) {
+        this.file = file;
+        backup = new File(file.getParentFile(), file.getName() + ".bak");
+        final File source;
+        if (file.exists()) {
+            source = file;
+        } else if (backup.exists()) {
+            source = backup;
+            dirty = true; // Write the file again
+        } else {
+            return;
+        }
+        YamlConfiguration yaml = new YamlConfiguration();
+        try {
+            yaml.load(source);
+        } catch (IOException | InvalidConfigurationException e) {
+            throw new IllegalStateException("Could not load item ids from \"%s\"! Restore it from \"%s\" or fix it, item ids must never be assigned again."
+                    .formatted(source.getName(), source == file ? backup.getName() : file.getName()), e);
+        }
+        if (!yaml.isList(ItemIds.PATH))
+            throw new IllegalStateException("Could not find item ids in \"%s\"!".formatted(source.getName()));
+        for (String key : yaml.getStringList(ItemIds.PATH)) {
+            if (ids.putIfAbsent(key, keys.size()) != null)
+                throw new IllegalStateException("Duplicate item key \"%s\" in \"%s\"!".formatted(key, source.getName()));
+            keys.add(key);
+        }
+    }
+
+    /**
+     * Returns the id of an item key, assigning a new one when the key has none yet.
+     *
+     * @param key the item key
+     * @return the id of the item key
+     */
+    synchronized int idOf(final @NotNull String key) {
+        Integer id = ids.get(key);
+        if (id != null) return id;
+        int newId = keys.size();
+        keys.add(key);
+        ids.put(key, newId);
+        dirty = true;
+        return newId;
+    }
+
+    /**
+     * Returns the number of ids assigned, which is also the smallest id not yet assigned.
+     *
+     * @return the number of ids assigned
+     */
+    synchronized int size() {
+        return keys.size();
+    }
+
+    /**
+     * Saves the mapping when new ids were assigned since the last save.
+     *
+     * @throws IllegalStateException when the mapping could not be saved
+     */
+    synchronized void save() {
+        if (!dirty) return;
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set(ItemIds.PATH, new ArrayList<>(keys));
+        String contents = yaml.saveToString();
+        // The backup first, so at least one of the files always holds all the ids
+        ItemIds.write(backup, contents);
+        ItemIds.write(file, contents);
+        dirty = false;
+    }
+
+    /**
+     * Replaces the contents of a file atomically, so the file is never left half written.
+     *
+     * @throws IllegalStateException when the file could not be written
+     */
+    private static void write(final @NotNull File file, final @NotNull String contents) {
+        Path path = file.toPath();
+        try {
+            Files.createDirectories(path.getParent());
+            Path temp = Files.createTempFile(path.getParent(), file.getName(), ".tmp");
+            Files.writeString(temp, contents, StandardCharsets.UTF_8);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not save item ids to \"%s\"!".formatted(file.getName()), e);
+        }
+    }
+}
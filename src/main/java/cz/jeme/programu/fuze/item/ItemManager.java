@@ -1,15 +1,22 @@
 package cz.jeme.programu.fuze.item;
 
-import cz.jeme.programu.fuze.Config;
+import cz.jeme.programu.fuze.Fuze;
+import cz.jeme.programu.fuze.item.event.EventManager;
+import cz.jeme.programu.fuze.item.loot.Rarity;
+import org.bukkit.Bukkit;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.io.File;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Manages all item registration in the Fuze plugin.
+ * <p>All the items and rarities are held in an immutable {@link ItemRegistry} snapshot.
+ * A reload builds a new snapshot and publishes it with a single reference swap.</p>
  */
 public enum ItemManager {
     /**
@@ -17,54 +24,113 @@ public enum ItemManager {
      */
     INSTANCE;
 
-    private final @NotNull Map<String, Set<FuzeItem>> typedItems = new HashMap<>();
-    private final @NotNull Map<String, FuzeItem> keyedItems = new HashMap<>();
+    private volatile @NotNull ItemRegistry registry = ItemRegistry.EMPTY;
+    private @Nullable ItemIds ids;
 
     /**
-     * Clears all item registrations.
+     * Clears all item registrations and their event subscriptions.
      * <p>After calling this method, you should always register all items again.</p>
      */
     public void reset() {
-        typedItems.clear();
+        publish(ItemRegistry.EMPTY);
     }
 
     /**
-     * Registers an item.
+     * Builds a new registry.
+     * <p>Unchanged items and rarities of the currently published registry are reused, see {@link ItemRegistry.Builder}.</p>
+     * <p>The loader registers all the rarities and item types in the builder, the items are then built
+     * following the dependencies of the item types. While building, lookups made by the building threads
+     * (e.g. {@link Rarity#valueOf(String)} or {@link FuzeItem#valueOf(String)} in item constructors) see the registrations
+     * of the builder, other threads keep seeing the published registry.</p>
+     * <p>The registry is not published, see {@link ItemManager#publish(ItemRegistry)}.
+     * This method may be called from any thread.</p>
      *
-     * @param itemClass   the item class
-     * @param sectionName the name of the {@link ConfigurationSection}, that contains the configuration for all instances of this item
-     * @param <T>         the item
-     */
-    public <T extends FuzeItem> void registerItem(final @NotNull Class<T> itemClass, final @NotNull String sectionName) {
-        ConfigurationSection section = Objects.requireNonNull(
-                Config.instance().getRegistry().getConfigurationSection(sectionName),
-                "\"" + sectionName + "\" not found in registry!"
-        );
-        final Constructor<T> constructor;
-        try {
-            constructor = itemClass.getDeclaredConstructor(ConfigurationSection.class);
-        } catch (NoSuchMethodException e) {
-            throw new IllegalStateException(
-                    "No constructor matching %s was found in item: %s"
-                            .formatted(ConfigurationSection.class.getName(), itemClass.getName()),
-                    e
-            );
+     * @param registry the registry {@link ConfigurationSection} to load the rarities and items from
+     * @param loader   the loader registering all the rarities and items
+     * @return the built registry
+     */
+    public @NotNull ItemRegistry build(final @NotNull ConfigurationSection registry, final @NotNull Consumer<ItemRegistry.Builder> loader) {
+        if (ItemRegistry.Builder.LOADING.get() != null)
+            throw new IllegalStateException("A registry is already being built on this thread!");
+        ItemRegistry.Builder builder = new ItemRegistry.Builder(registry, this.registry);
+        loader.accept(builder);
+        ItemRegistry built = builder.build();
+        ids().save();
+        return built;
+    }
+
+    /**
+     * Publishes a registry, replacing the current one.
+     * <p>Events of item classes no longer present in the registry are unregistered, events of new item classes are registered,
+     * subscriptions of the item classes present in both registries are kept.</p>
+     * <p>Must be called from the main thread.</p>
+     *
+     * @param registry the registry to publish
+     * @throws IllegalStateException when called from another thread than the main thread
+     */
+    public void publish(final @NotNull ItemRegistry registry) {
+        if (!Bukkit.isPrimaryThread())
+            throw new IllegalStateException("Registries can only be published from the main thread!");
+        Set<Class<? extends FuzeItem>> previousClasses = ItemManager.itemClasses(this.registry);
+        Set<Class<? extends FuzeItem>> classes = ItemManager.itemClasses(registry);
+        this.registry = registry;
+        for (Class<? extends FuzeItem> itemClass : previousClasses) {
+            if (!classes.contains(itemClass)) EventManager.INSTANCE.unregisterEvents(itemClass);
         }
-        constructor.setAccessible(true);
-        for (String itemKey : section.getKeys(false)) {
-            final T item;
-            try {
-                item = constructor.newInstance(section.getConfigurationSection(itemKey));
-            } catch (InstantiationException | InvocationTargetException | IllegalAccessException e) {
-                throw new IllegalStateException(
-                        "Unable to register (initialize) item: " + itemClass.getName(),
-                        e
-                );
+        for (Class<? extends FuzeItem> itemClass : classes)
+            EventManager.INSTANCE.registerEvents(itemClass, false);
+    }
+
+    /**
+     * Returns the classes of all items in a registry including all their superclasses up to {@link FuzeItem}.
+     */
+    private static @NotNull Set<Class<? extends FuzeItem>> itemClasses(final @NotNull ItemRegistry registry) {
+        Set<Class<? extends FuzeItem>> classes = new HashSet<>();
+        for (FuzeItem item : registry.getItems()) {
+            Class<?> itemClass = item.getClass();
+            while (FuzeItem.class.isAssignableFrom(itemClass)) {
+                classes.add(itemClass.asSubclass(FuzeItem.class));
+                itemClass = itemClass.getSuperclass();
             }
-            typedItems.computeIfAbsent(item.getType(), type -> new HashSet<>());
-            typedItems.get(item.getType()).add(item);
-            keyedItems.put(item.getKey(), item);
         }
+        return classes;
+    }
+
+    /**
+     * Returns the currently published registry.
+     * <p>Use the returned snapshot when multiple lookups have to be consistent with each other.</p>
+     *
+     * @return the current registry
+     */
+    public @NotNull ItemRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Returns the id of an item key, assigning a new one when the key has none yet.
+     * <p>Ids are dense, stable across reloads and restarts and never reused.</p>
+     *
+     * @param key the item key
+     * @return the id of the item key
+     */
+    int assignId(final @NotNull String key) {
+        return ids().idOf(key);
+    }
+
+    private synchronized @NotNull ItemIds ids() {
+        if (ids == null) ids = new ItemIds(new File(Fuze.getPlugin().getDataFolder(), "ids.yml"));
+        return ids;
+    }
+
+    /**
+     * Returns an item registered with the provided id.
+     * <p><b>You should probably use {@link FuzeItem#resolve(ItemStack)} instead!</b></p>
+     *
+     * @param id the item id
+     * @return an optional item registered with the id
+     */
+    public @NotNull Optional<FuzeItem> getItemById(final int id) {
+        return registry.getItemById(id);
     }
 
     /**
@@ -75,7 +141,8 @@ public enum ItemManager {
      * @return an optional item registered with the key
      */
     public @NotNull Optional<FuzeItem> getItemByKey(final @NotNull String key) {
-        return Optional.ofNullable(keyedItems.get(key));
+        ItemRegistry.Builder builder = ItemRegistry.Builder.LOADING.get();
+        return builder == null ? registry.getItemByKey(key) : builder.getItemByKey(key);
     }
 
     /**
@@ -86,7 +153,19 @@ public enum ItemManager {
      * @return true when the item exists otherwise false
      */
     public boolean existsItemByKey(final @NotNull String key) {
-        return keyedItems.containsKey(key);
+        return getItemByKey(key).isPresent();
+    }
+
+    /**
+     * Returns a rarity registered with the provided key.
+     * <p><b>You should probably use {@link Rarity#valueOf(String)} instead!</b></p>
+     *
+     * @param key the rarity key
+     * @return an optional rarity registered with the key
+     */
+    public @NotNull Optional<Rarity> getRarity(final @NotNull String key) {
+        ItemRegistry.Builder builder = ItemRegistry.Builder.LOADING.get();
+        return builder == null ? registry.getRarity(key) : builder.getRarity(key);
     }
 
     /**
@@ -94,37 +173,65 @@ public enum ItemManager {
      * When no items are found, an empty immutable set is returned.
      *
      * @param type the item type
-     * @return a set of items registered with the item type
+     * @return an unmodifiable set of items registered with the item type
      */
     public @NotNull Set<FuzeItem> getItemsByType(final @NotNull String type) {
-        return typedItems.containsKey(type) ? new HashSet<>(typedItems.get(type)) : Set.of();
+        return registry.getItemsByType(type);
     }
 
-
     /**
      * Returns all item types registered.
      *
-     * @return a set of all item types registered
+     * @return an unmodifiable set of all item types registered
      */
     public @NotNull Set<String> getItemTypes() {
-        return new HashSet<>(typedItems.keySet());
+        return registry.getItemTypes();
     }
 
     /**
      * Returns all items registered.
      *
-     * @return a set of all items registered
+     * @return an unmodifiable set of all items registered
      */
     public @NotNull Set<FuzeItem> getItems() {
-        return new HashSet<>(keyedItems.values());
+        return registry.getItems();
     }
 
     /**
      * Returns all registered item keys.
      *
-     * @return a set of all item keys registered
+     * @return an unmodifiable set of all item keys registered
      */
     public @NotNull Set<String> getItemKeys() {
-        return new HashSet<>(keyedItems.keySet());
+        return registry.getItemKeys();
+    }
+
+    /**
+     * Returns the sorted index of all registered item keys.
+     *
+     * @return the index of all item keys registered
+     */
+    public @NotNull KeyIndex getItemKeyIndex() {
+        return registry.getItemKeyIndex();
+    }
+
+    /**
+     * Returns the sorted index of all registered item types.
+     *
+     * @return the index of all item types registered
+     */
+    public @NotNull KeyIndex getItemTypeIndex() {
+        return registry.getItemTypeIndex();
+    }
+
+    /**
+     * Returns the sorted index of the keys of all items registered with the provided item type.
+     * When no items are found, an empty index is returned.
+     *
+     * @param type the item type
+     * @return the index of the item keys registered with the item type
+     */
+    public @NotNull KeyIndex getItemKeyIndex(final @NotNull String type) {
+        return registry.getItemKeyIndex(type);
     }
 }
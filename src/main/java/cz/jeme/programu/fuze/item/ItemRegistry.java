@@ -0,0 +1,500 @@
+package cz.jeme.programu.fuze.item;
+
+import cz.jeme.programu.fuze.item.loot.Rarity;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable snapshot of all the registered items and rarities.
+ * <p>A snapshot is built using a {@link Builder} and then published by {@link ItemManager} as a whole,
+ * so readers always see either the previous or the new registry, never a half-built one.
+ * Holding a snapshot gives a consistent view even when the registry is reloaded meanwhile.</p>
+ * <p>Snapshots are safe to read from any thread.</p>
+ * <p>Every snapshot remembers the config values its items and rarities were loaded from. When a new snapshot is built,
+ * items and rarities whose values did not change (and whose dependencies were not rebuilt) are reused as they are.</p>
+ * <p>All the returned collections are unmodifiable views of the snapshot, they are never copied.</p>
+ */
+public final class ItemRegistry {
+    /**
+     * The registry published before any items are registered.
+     */
+    static final @NotNull ItemRegistry EMPTY = new ItemRegistry(Map.of(), Map.of(), Map.of(), new FuzeItem[0], Map.of(), Map.of(), 0);
+
+    private final @NotNull Map<String, Rarity> rarities;
+    private final @NotNull Set<Rarity> allRarities;
+    private final @NotNull Map<String, FuzeItem> keyedItems;
+    private final @NotNull Set<FuzeItem> items;
+    private final @NotNull Map<String, Set<FuzeItem>> typedItems;
+    private final @Nullable FuzeItem @NotNull [] idItems;
+    private final @NotNull KeyIndex keyIndex;
+    private final @NotNull KeyIndex typeIndex;
+    private final @NotNull Map<String, KeyIndex> typedKeyIndexes;
+    private final @NotNull Map<String, Map<String, Object>> rarityValues;
+    private final @NotNull Map<String, Map<String, Object>> itemValues;
+    private final int rebuilt;
+
+    private ItemRegistry(final @NotNull Map<String, Rarity> rarities,
+                         final @NotNull Map<String, FuzeItem> keyedItems,
+                         final @NotNull Map<String, Set<FuzeItem>> typedItems,
+                         final @Nullable FuzeItem @NotNull [] idItems,
+                         final @NotNull Map<String, Map<String, Object>> rarityValues,
+                         final @NotNull Map<String, Map<String, Object>> itemValues,
+                         final int rebuilt) {
+        this.rarities = rarities;
+        allRarities = Set.copyOf(rarities.values());
+        this.keyedItems = keyedItems;
+        items = Set.copyOf(keyedItems.values());
+        this.typedItems = typedItems;
+        this.idItems = idItems;
+        keyIndex = KeyIndex.of(keyedItems.keySet());
+        typeIndex = KeyIndex.of(typedItems.keySet());
+        Map<String, KeyIndex> typedKeyIndexes = new HashMap<>();
+        typedItems.forEach((type, typeItems) -> typedKeyIndexes.put(
+                type,
+                KeyIndex.of(typeItems.stream().map(FuzeItem::getKey).toList())
+        ));
+        this.typedKeyIndexes = Map.copyOf(typedKeyIndexes);
+        this.rarityValues = rarityValues;
+        this.itemValues = itemValues;
+        this.rebuilt = rebuilt;
+    }
+
+    /**
+     * Returns the number of items and rarities that were newly built for this registry,
+     * the others were reused from the previous registry.
+     *
+     * @return the number of rebuilt items and rarities
+     */
+    public int getRebuiltCount() {
+        return rebuilt;
+    }
+
+    /**
+     * Returns an item registered with the provided id.
+     *
+     * @param id the item id
+     * @return an optional item registered with the id
+     */
+    public @NotNull Optional<FuzeItem> getItemById(final int id) {
+        return id >= 0 && id < idItems.length ? Optional.ofNullable(idItems[id]) : Optional.empty();
+    }
+
+    /**
+     * Returns an item registered with the provided key.
+     *
+     * @param key the item key
+     * @return an optional item registered with the key
+     */
+    public @NotNull Optional<FuzeItem> getItemByKey(final @NotNull String key) {
+        return Optional.ofNullable(keyedItems.get(key));
+    }
+
+    /**
+     * Returns whether an item registered with the provided key exists.
+     *
+     * @param key the item key
+     * @return true when the item exists otherwise false
+     */
+    public boolean existsItemByKey(final @NotNull String key) {
+        return keyedItems.containsKey(key);
+    }
+
+    /**
+     * Returns all items registered with the provided item type.
+     * When no items are found, an empty immutable set is returned.
+     *
+     * @param type the item type
+     * @return an unmodifiable set of items registered with the item type
+     */
+    public @NotNull Set<FuzeItem> getItemsByType(final @NotNull String type) {
+        return typedItems.getOrDefault(type, Set.of());
+    }
+
+    /**
+     * Returns all item types registered.
+     *
+     * @return an unmodifiable set of all item types registered
+     */
+    public @NotNull Set<String> getItemTypes() {
+        return typedItems.keySet();
+    }
+
+    /**
+     * Returns all items registered.
+     *
+     * @return an unmodifiable set of all items registered
+     */
+    public @NotNull Set<FuzeItem> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns all registered item keys.
+     *
+     * @return an unmodifiable set of all item keys registered
+     */
+    public @NotNull Set<String> getItemKeys() {
+        return keyedItems.keySet();
+    }
+
+    /**
+     * Returns the sorted index of all registered item keys.
+     *
+     * @return the index of all item keys registered
+     */
+    public @NotNull KeyIndex getItemKeyIndex() {
+        return keyIndex;
+    }
+
+    /**
+     * Returns the sorted index of all registered item types.
+     *
+     * @return the index of all item types registered
+     */
+    public @NotNull KeyIndex getItemTypeIndex() {
+        return typeIndex;
+    }
+
+    /**
+     * Returns the sorted index of the keys of all items registered with the provided item type.
+     * When no items are found, an empty index is returned.
+     *
+     * @param type the item type
+     * @return the index of the item keys registered with the item type
+     */
+    public @NotNull KeyIndex getItemKeyIndex(final @NotNull String type) {
+        return typedKeyIndexes.getOrDefault(type, KeyIndex.EMPTY);
+    }
+
+    /**
+     * Returns a rarity registered with the provided key.
+     *
+     * @param key the rarity key
+     * @return an optional rarity registered with the key
+     */
+    public @NotNull Optional<Rarity> getRarity(final @NotNull String key) {
+        return Optional.ofNullable(rarities.get(key));
+    }
+
+    /**
+     * Returns whether a rarity registered with the provided key exists.
+     *
+     * @param key the rarity key
+     * @return true when the rarity exists otherwise false
+     */
+    public boolean existsRarity(final @NotNull String key) {
+        return rarities.containsKey(key);
+    }
+
+    /**
+     * Returns all rarities registered.
+     *
+     * @return an unmodifiable set of all rarities registered
+     */
+    public @NotNull Set<Rarity> getRarities() {
+        return allRarities;
+    }
+
+    /**
+     * Builds a new {@link ItemRegistry}.
+     * <p>Obtained in {@link ItemManager#build(ConfigurationSection, java.util.function.Consumer)}.
+     * While the builder is loading, item lookups made by the loading threads (e.g. {@link Rarity#valueOf(String)}
+     * in item constructors) see the items and rarities registered in this builder so far.</p>
+     * <p>Item types declare the item types they depend on when registered. The types are built in waves following
+     * the dependency graph, types of one wave and the items inside each type are constructed in parallel
+     * on the {@link ForkJoinPool#commonPool()}. After a wave is constructed, its new items are linked
+     * ({@link FuzeItem#link()}), so items should resolve references to other items there rather than in the constructor.</p>
+     * <p>Items and rarities are reused from the previous registry when their config values did not change.
+     * Items are also rebuilt when their rarity or any of their dependencies ({@link FuzeItem#getDependencies()})
+     * was rebuilt.</p>
+     */
+    public static final class Builder {
+        /**
+         * The builder loading on the current thread.
+         */
+        static final @NotNull ThreadLocal<Builder> LOADING = new ThreadLocal<>();
+
+        private final @NotNull ConfigurationSection registry;
+        private final @NotNull ItemRegistry previous;
+        private final @NotNull Map<String, Rarity> rarities = new HashMap<>();
+        private final @NotNull Map<String, FuzeItem> keyedItems = new HashMap<>();
+        private final @NotNull Map<String, Set<FuzeItem>> typedItems = new HashMap<>();
+        private final @NotNull Map<String, Map<String, Object>> rarityValues = new HashMap<>();
+        private final @NotNull Map<String, Map<String, Object>> itemValues = new HashMap<>();
+        private final @NotNull Map<Class<? extends FuzeItem>, ItemType<?>> types = new LinkedHashMap<>();
+        private int rebuilt = 0;
+
+        Builder(final @NotNull ConfigurationSection registry, final @NotNull ItemRegistry previous) {
+            this.registry = registry;
+            this.previous = previous;
+        }
+
+        /**
+         * Registers all the rarities in a registry section.
+         * <p>Rarities are loaded immediately, before any item type is built.</p>
+         *
+         * @param sectionName the name of the {@link ConfigurationSection}, that contains all the rarities
+         * @throws NullPointerException     when the section does not exist
+         * @throws IllegalArgumentException when it encounters an invalid or duplicate rarity
+         */
+        public void registerRarities(final @NotNull String sectionName) {
+            ConfigurationSection section = requireSection(sectionName);
+            for (String rarityKey : section.getKeys(false)) {
+                ConfigurationSection raritySection = section.getConfigurationSection(rarityKey);
+                if (raritySection == null)
+                    throw new IllegalArgumentException("Invalid rarity in \"" + rarityKey + "\"!");
+                if (rarities.containsKey(rarityKey))
+                    throw new IllegalArgumentException("Duplicate rarity key: \"" + rarityKey + "\"!");
+                Map<String, Object> values = ItemRegistry.values(raritySection);
+                Rarity rarity = previous.rarities.get(rarityKey);
+                if (rarity == null || !values.equals(previous.rarityValues.get(rarityKey))) {
+                    rarity = Rarity.load(raritySection);
+                    rebuilt++;
+                }
+                rarities.put(rarityKey, rarity);
+                rarityValues.put(rarityKey, values);
+            }
+        }
+
+        /**
+         * Registers an item type, all its instances are built later together with the other item types.
+         *
+         * @param itemClass    the item class
+         * @param sectionName  the name of the {@link ConfigurationSection}, that contains the configuration for all instances of this item
+         * @param dependencies the item types the instances of this item type depend on, e.g. the ammo of a gun
+         * @param <T>          the item
+         * @throws IllegalArgumentException when the item type is already registered
+         * @throws IllegalStateException    when the item has no constructor matching {@link FuzeItem#FuzeItem(ConfigurationSection)}
+         */
+        @SafeVarargs
+        public final <T extends FuzeItem> void registerItem(final @NotNull Class<T> itemClass,
+                                                            final @NotNull String sectionName,
+                                                            final @NotNull Class<? extends FuzeItem>... dependencies) {
+            if (types.containsKey(itemClass))
+                throw new IllegalArgumentException("Item \"%s\" is already registered!".formatted(itemClass.getName()));
+            final Constructor<T> constructor;
+            try {
+                constructor = itemClass.getDeclaredConstructor(ConfigurationSection.class);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(
+                        "No constructor matching %s was found in item: %s"
+                                .formatted(ConfigurationSection.class.getName(), itemClass.getName()),
+                        e
+                );
+            }
+            constructor.setAccessible(true);
+            // Copied in a loop, passing the varargs array on to Set#of is flagged by -Xlint:varargs
+            Set<Class<? extends FuzeItem>> dependencySet = new HashSet<>();
+            for (Class<? extends FuzeItem> dependency : dependencies)
+                dependencySet.add(dependency);
+            types.put(itemClass, new ItemType<>(itemClass, constructor, sectionName, Set.copyOf(dependencySet)));
+        }
+
+        /**
+         * A registered item type.
+         *
+         * @param itemClass    the item class
+         * @param constructor  the constructor of the item
+         * @param sectionName  the name of the section with all instances of the item
+         * @param dependencies the item types the item depends on
+         * @param <T>          the item
+         */
+        private record ItemType<T extends FuzeItem>(@NotNull Class<T> itemClass,
+                                                    @NotNull Constructor<T> constructor,
+                                                    @NotNull String sectionName,
+                                                    @NotNull Set<Class<? extends FuzeItem>> dependencies) {
+        }
+
+        /**
+         * An item instance staged for construction.
+         *
+         * @param type    the item type
+         * @param section the section of the item
+         * @param values  the config values of the item
+         */
+        private record Staged(@NotNull ItemType<?> type,
+                              @NotNull ConfigurationSection section,
+                              @NotNull Map<String, Object> values) {
+        }
+
+        /**
+         * Sorts the registered item types into waves, every type only depends on types of the previous waves.
+         */
+        private @NotNull List<List<ItemType<?>>> waves() {
+            Map<Class<? extends FuzeItem>, Integer> missing = new HashMap<>();
+            Map<Class<? extends FuzeItem>, List<ItemType<?>>> dependants = new HashMap<>();
+            List<ItemType<?>> wave = new ArrayList<>();
+            for (ItemType<?> type : types.values()) {
+                for (Class<? extends FuzeItem> dependency : type.dependencies()) {
+                    if (!types.containsKey(dependency))
+                        throw new IllegalArgumentException("Item \"%s\" depends on \"%s\", which is not registered!"
+                                .formatted(type.itemClass().getName(), dependency.getName()));
+                    dependants.computeIfAbsent(dependency, dep -> new ArrayList<>()).add(type);
+                }
+                missing.put(type.itemClass(), type.dependencies().size());
+                if (type.dependencies().isEmpty()) wave.add(type);
+            }
+
+            List<List<ItemType<?>>> waves = new ArrayList<>();
+            int sorted = 0;
+            while (!wave.isEmpty()) {
+                waves.add(wave);
+                sorted += wave.size();
+                List<ItemType<?>> next = new ArrayList<>();
+                for (ItemType<?> type : wave) {
+                    for (ItemType<?> dependant : dependants.getOrDefault(type.itemClass(), List.of())) {
+                        if (missing.merge(dependant.itemClass(), -1, Integer::sum) == 0) next.add(dependant);
+                    }
+                }
+                wave = next;
+            }
+            if (sorted != types.size()) {
+                String cycle = missing.entrySet().stream()
+                        .filter(entry -> entry.getValue() > 0)
+                        .map(entry -> entry.getKey().getName())
+                        .sorted()
+                        .collect(Collectors.joining(", "));
+                throw new IllegalArgumentException("Item dependencies contain a cycle between: " + cycle);
+            }
+            return waves;
+        }
+
+        private void buildWave(final @NotNull List<ItemType<?>> wave) {
+            // Staged and assigned ids sequentially, so new ids follow the config order
+            List<Staged> staged = new ArrayList<>();
+            Set<String> stagedKeys = new HashSet<>();
+            for (ItemType<?> type : wave) {
+                ConfigurationSection section = requireSection(type.sectionName());
+                for (String itemKey : section.getKeys(false)) {
+                    ConfigurationSection itemSection = section.getConfigurationSection(itemKey);
+                    if (itemSection == null)
+                        throw new IllegalArgumentException("Invalid item in \"" + itemKey + "\"!");
+                    if (keyedItems.containsKey(itemKey) || !stagedKeys.add(itemKey))
+                        throw new IllegalArgumentException("Duplicate item key: \"" + itemKey + "\"!");
+                    ItemManager.INSTANCE.assignId(itemKey);
+                    staged.add(new Staged(type, itemSection, ItemRegistry.values(itemSection)));
+                }
+            }
+
+            // The maps of this builder are only read while the wave is constructed
+            List<ForkJoinTask<FuzeItem>> tasks = staged.stream()
+                    .map(item -> ForkJoinPool.commonPool().submit(() -> loading(() -> construct(item))))
+                    .toList();
+
+            List<FuzeItem> built = new ArrayList<>();
+            for (int i = 0; i < staged.size(); i++) {
+                Staged item = staged.get(i);
+                FuzeItem fuzeItem = tasks.get(i).join();
+                if (fuzeItem != previous.keyedItems.get(fuzeItem.getKey())) built.add(fuzeItem);
+                keyedItems.put(fuzeItem.getKey(), fuzeItem);
+                itemValues.put(fuzeItem.getKey(), item.values());
+                typedItems.computeIfAbsent(fuzeItem.getType(), type -> new HashSet<>()).add(fuzeItem);
+            }
+            rebuilt += built.size();
+            for (FuzeItem fuzeItem : built)
+                fuzeItem.link();
+        }
+
+        private @NotNull FuzeItem construct(final @NotNull Staged staged) {
+            FuzeItem item = reusable(staged);
+            if (item != null) return item;
+            try {
+                return staged.type().constructor().newInstance(staged.section());
+            } catch (InstantiationException | InvocationTargetException | IllegalAccessException e) {
+                throw new IllegalStateException(
+                        "Unable to register (initialize) item: " + staged.type().itemClass().getName(),
+                        e
+                );
+            }
+        }
+
+        private @Nullable FuzeItem reusable(final @NotNull Staged staged) {
+            String key = staged.section().getName();
+            FuzeItem item = previous.keyedItems.get(key);
+            if (item == null || item.getClass() != staged.type().itemClass()) return null;
+            if (!staged.values().equals(previous.itemValues.get(key))) return null;
+            if (rarities.get(item.getRarity().getKey()) != item.getRarity()) return null;
+            for (String dependency : item.getDependencies()) {
+                if (keyedItems.get(dependency) != previous.keyedItems.get(dependency)) return null;
+            }
+            return item;
+        }
+
+        private <R> R loading(final @NotNull Supplier<R> task) {
+            Builder loading = Builder.LOADING.get();
+            Builder.LOADING.set(this);
+            try {
+                return task.get();
+            } finally {
+                if (loading == null) {
+                    Builder.LOADING.remove();
+                } else {
+                    Builder.LOADING.set(loading);
+                }
+            }
+        }
+
+        private @NotNull ConfigurationSection requireSection(final @NotNull String sectionName) {
+            return Objects.requireNonNull(
+                    registry.getConfigurationSection(sectionName),
+                    "\"" + sectionName + "\" not found in registry!"
+            );
+        }
+
+        @NotNull Optional<FuzeItem> getItemByKey(final @NotNull String key) {
+            return Optional.ofNullable(keyedItems.get(key));
+        }
+
+        @NotNull Optional<Rarity> getRarity(final @NotNull String key) {
+            return Optional.ofNullable(rarities.get(key));
+        }
+
+        @NotNull ItemRegistry build() {
+            loading(() -> {
+                for (List<ItemType<?>> wave : waves())
+                    buildWave(wave);
+                return null;
+            });
+
+            int size = keyedItems.values().stream()
+                    .mapToInt(FuzeItem::getId)
+                    .max()
+                    .orElse(-1) + 1;
+            FuzeItem[] idItems = new FuzeItem[size];
+            for (FuzeItem item : keyedItems.values())
+                idItems[item.getId()] = item;
+
+            Map<String, Set<FuzeItem>> types = new HashMap<>();
+            typedItems.forEach((type, items) -> types.put(type, Set.copyOf(items)));
+
+            return new ItemRegistry(
+                    Map.copyOf(rarities),
+                    Map.copyOf(keyedItems),
+                    Map.copyOf(types),
+                    idItems,
+                    Map.copyOf(rarityValues),
+                    Map.copyOf(itemValues),
+                    rebuilt
+            );
+        }
+    }
+
+    /**
+     * Returns all the values in a {@link ConfigurationSection} (deep) without the nested sections themselves,
+     * so two sections with the same contents have equal values.
+     */
+    private static @NotNull Map<String, Object> values(final @NotNull ConfigurationSection section) {
+        Map<String, Object> values = new HashMap<>(section.getValues(true));
+        values.values().removeIf(ConfigurationSection.class::isInstance);
+        return Map.copyOf(values);
+    }
+}
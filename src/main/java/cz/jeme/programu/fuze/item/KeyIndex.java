@@ -0,0 +1,81 @@
+package cz.jeme.programu.fuze.item;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable sorted index of keys supporting prefix lookups.
+ * <p>The keys are held in a sorted array, a prefix lookup is two binary searches
+ * returning a view of the matching range, no keys are scanned or copied.</p>
+ */
+public final class KeyIndex {
+    /**
+     * An index without any keys.
+     */
+    public static final @NotNull KeyIndex EMPTY = new KeyIndex(new String[0]);
+
+    private final @NotNull String @NotNull [] keys;
+    private final @NotNull List<String> view;
+
+    private KeyIndex(final @NotNull String @NotNull [] keys) {
+        this.keys = keys;
+        view = Collections.unmodifiableList(Arrays.asList(keys));
+    }
+
+    /**
+     * Creates a new index of keys.
+     *
+     * @param keys the keys to index, must not contain duplicates
+     * @return the index of the keys
+     */
+    public static @NotNull KeyIndex of(final @NotNull Collection<String> keys) {
+        if (keys.isEmpty()) return KeyIndex.EMPTY;
+        String[] sorted = keys.toArray(String[]::new);
+        Arrays.sort(sorted);
+        return new KeyIndex(sorted);
+    }
+
+    /**
+     * Returns all the keys starting with a prefix in their natural order.
+     *
+     * @param prefix the prefix, an empty prefix matches all the keys
+     * @return an unmodifiable view of the matching keys
+     */
+    public @NotNull List<String> startingWith(final @NotNull String prefix) {
+        if (prefix.isEmpty()) return view;
+        int from = lowerBound(prefix);
+        // Every key starting with the prefix sorts before the prefix followed by the greatest char
+        int to = lowerBound(prefix + Character.MAX_VALUE);
+        return view.subList(from, to);
+    }
+
+    /**
+     * Returns all the keys in their natural order.
+     *
+     * @return an unmodifiable view of all the keys
+     */
+    public @NotNull List<String> getKeys() {
+        return view;
+    }
+
+    /**
+     * Returns the index of the first key that is not less than the provided key.
+     */
+    private int lowerBound(final @NotNull String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,38 @@
+package cz.jeme.programu.fuze.item.event;
+
+import cz.jeme.programu.fuze.item.FuzeItem;
+import org.bukkit.event.Event;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Represents a subscribe method bound to a direct call.
+ * <p>Invokers are generated by {@link EventManager} once during event registration,
+ * so distributing an event is a plain interface call instead of a reflective one.</p>
+ * <p>This interface should not be implemented outside the Fuze API.</p>
+ */
+@FunctionalInterface
+public interface EventInvoker {
+    /**
+     * Invokes the bound subscribe method.
+     *
+     * @param fuzeItem the fuze item the event was routed to, this is the receiver of routed instance methods;
+     *                 null for subscriptions that are not routed
+     * @param event    the event to pass to the subscribe method
+     */
+    void invoke(final @Nullable FuzeItem fuzeItem, final @NotNull Event event);
+
+    /**
+     * Represents a static subscribe method bound to a direct call.
+     * <p>This interface should not be implemented outside the Fuze API.</p>
+     */
+    @FunctionalInterface
+    interface Static {
+        /**
+         * Invokes the bound static subscribe method.
+         *
+         * @param event the event to pass to the subscribe method
+         */
+        void invoke(final @NotNull Event event);
+    }
+}
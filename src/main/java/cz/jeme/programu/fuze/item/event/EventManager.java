@@ -8,10 +8,17 @@ import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.plugin.RegisteredListener;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages all event registration in the Fuze plugin.
@@ -22,83 +29,389 @@ public enum EventManager implements Listener {
      */
     INSTANCE;
 
-    private record Subscription(@NotNull Method subscribeMethod, @NotNull FuzeItem fuzeItem) {
+    private record Subscription(@NotNull Class<? extends FuzeItem> itemClass,
+                                @NotNull SubscriptionIndex.Entry entry,
+                                @NotNull EventInvoker invoker,
+                                @NotNull SubscriptionTimings timings) {
+        private Subscription(final @NotNull Class<? extends FuzeItem> itemClass,
+                             final @NotNull SubscriptionIndex.Entry entry,
+                             final @NotNull EventInvoker invoker) {
+            this(itemClass, entry, invoker, new SubscriptionTimings(itemClass.getSimpleName() + "#" + entry.methodName()));
+        }
+
+        private void invoke(final @Nullable FuzeItem fuzeItem, final @NotNull Event event, final boolean timed) {
+            if (!timed) {
+                invoker.invoke(fuzeItem, event);
+                return;
+            }
+            final long start = System.nanoTime();
+            try {
+                invoker.invoke(fuzeItem, event);
+            } finally {
+                timings.record(System.nanoTime() - start);
+            }
+        }
+
         @Override
         public @NotNull String toString() {
-            return "subscription %s on %s"
-                    .formatted(subscribeMethod.toString(), fuzeItem.toString());
+            return "subscription %s#%s".formatted(itemClass.getName(), entry.methodName());
         }
     }
 
-    private final @NotNull Map<Class<? extends Event>, Set<Subscription>> events = new HashMap<>();
+    private static final @NotNull Subscription @NotNull [] NO_SUBSCRIPTIONS = new Subscription[0];
+
+    /**
+     * Holds the subscriptions sharing one {@link EventPriority} and cancellation policy.
+     * <p>Every bucket is backed by its own {@link RegisteredListener}, so Bukkit orders the buckets
+     * by priority and skips cancelled events for ignoring buckets before any fuze item is resolved.</p>
+     */
+    private final class Bucket {
+        private final @NotNull Map<Class<? extends Event>, Set<Subscription>> events = new HashMap<>();
+        private volatile @NotNull Map<Class<? extends Event>, Subscription[]> dispatchTables = new ConcurrentHashMap<>();
+        private final @NotNull Set<HandlerList> attachedHandlerLists = new HashSet<>();
+        private final @NotNull RegisteredListener listener;
+
+        private Bucket(final @NotNull EventPriority priority, final boolean ignoreCancelled) {
+            listener = new RegisteredListener(
+                    EventManager.this,
+                    (listener, event) -> distributeEvent(event),
+                    priority,
+                    Fuze.getPlugin(),
+                    ignoreCancelled
+            );
+            // The listener is attached lazily only to the handler lists of subscribed events, see #updateHandlerLists()
+        }
+
+        private void distributeEvent(final @NotNull Event event) {
+            final Map<Class<? extends Event>, Subscription[]> tables = dispatchTables;
+            Subscription[] table = tables.get(event.getClass());
+            if (table == null) table = tables.computeIfAbsent(event.getClass(), this::resolveDispatchTable);
+            final boolean timed = timingsEnabled;
+            // The table is grouped by route, so every route is resolved just once
+            Route route = Route.NONE;
+            FuzeItem fuzeItem = null;
+            for (Subscription sub : table) {
+                final Route subRoute = sub.entry().route();
+                if (subRoute == Route.NONE) {
+                    sub.invoke(null, event, timed);
+                    continue;
+                }
+                if (subRoute != route) {
+                    route = subRoute;
+                    fuzeItem = route.resolve(event);
+                }
+                if (sub.itemClass().isInstance(fuzeItem))
+                    sub.invoke(fuzeItem, event, timed);
+            }
+        }
+
+        /**
+         * Flattens the subscriptions of an event class and all of its superclasses into one array.
+         * <p>The subscriptions are grouped by their route, subscriptions that are not routed come first.
+         * Inside a group, the subscriptions of the most specific class come first.</p>
+         *
+         * @param eventClass the concrete event class
+         * @return the dispatch table of the event class
+         */
+        private @NotNull Subscription @NotNull [] resolveDispatchTable(final @NotNull Class<? extends Event> eventClass) {
+            final List<Subscription> table = new ArrayList<>();
+            for (Class<?> clazz = eventClass; clazz != null && Event.class.isAssignableFrom(clazz); clazz = clazz.getSuperclass()) {
+                final Set<Subscription> subscriptions = events.get(clazz);
+                if (subscriptions != null) table.addAll(subscriptions);
+            }
+            table.sort(Comparator.comparing(sub -> sub.entry().route())); // Stable, keeps the class order
+            return table.isEmpty() ? EventManager.NO_SUBSCRIPTIONS : table.toArray(Subscription[]::new);
+        }
+
+        /**
+         * Called whenever subscriptions of this bucket are added or removed.
+         * <p>Rebuilds the dispatch tables of all event classes dispatched so far and publishes them all at once,
+         * so an event is never dispatched using a half-built table.
+         * Then attaches the listener to the handler lists of all subscribed events and
+         * detaches it from the handler lists that lost their last subscription.</p>
+         */
+        private void subscriptionsChanged() {
+            final Map<Class<? extends Event>, Subscription[]> rebuilt = new ConcurrentHashMap<>();
+            for (Class<? extends Event> eventClass : dispatchTables.keySet())
+                rebuilt.put(eventClass, resolveDispatchTable(eventClass));
+            dispatchTables = rebuilt;
+
+            final Set<HandlerList> required = new HashSet<>();
+            for (Class<? extends Event> eventClass : events.keySet())
+                required.add(getHandlerList(eventClass));
+
+            final Iterator<HandlerList> iterator = attachedHandlerLists.iterator();
+            while (iterator.hasNext()) {
+                final HandlerList handlerList = iterator.next();
+                if (required.contains(handlerList)) continue;
+                handlerList.unregister(listener);
+                iterator.remove();
+            }
+            for (HandlerList handlerList : required) {
+                if (attachedHandlerLists.add(handlerList))
+                    handlerList.register(listener);
+            }
+        }
+    }
+
+    private final @NotNull Bucket @NotNull [] buckets = new Bucket[EventPriority.values().length * 2];
     private final @NotNull Set<Class<? extends FuzeItem>> subscribers = new HashSet<>();
-    private final @NotNull RegisteredListener listener;
+    private final @NotNull Map<Class<? extends Event>, HandlerList> handlerLists = new HashMap<>();
+    private volatile boolean timingsEnabled = false;
+    private volatile long timingsWindowStart = System.nanoTime();
 
     EventManager() {
-        listener = new RegisteredListener(
-                this,
-                (listener, event) -> distributeEvent(event),
-                EventPriority.NORMAL,
-                Fuze.getPlugin(),
-                false
-        );
+        for (EventPriority priority : EventPriority.values()) {
+            buckets[EventManager.bucketIndex(priority, false)] = new Bucket(priority, false);
+            buckets[EventManager.bucketIndex(priority, true)] = new Bucket(priority, true);
+        }
+    }
 
-        HandlerList.getHandlerLists()
-                .forEach((handlerList) -> handlerList.register(listener));
+    private static int bucketIndex(final @NotNull EventPriority priority, final boolean ignoreCancelled) {
+        return priority.ordinal() * 2 + (ignoreCancelled ? 1 : 0);
     }
 
-    private void distributeEvent(final @NotNull Event event) {
-        Set<Subscription> subscriptions = events.get(event.getClass());
-        if (subscriptions == null) return;
-        subscriptions.forEach(sub -> {
+    /**
+     * Returns the {@link HandlerList} an event is fired through.
+     * <p>Just like Bukkit, this walks up the event hierarchy until it finds
+     * a class declaring the static {@code getHandlerList()} method.</p>
+     *
+     * @param eventClass the event class
+     * @return the handler list of the event class
+     * @throws IllegalStateException when no handler list was found for the event class
+     */
+    private @NotNull HandlerList getHandlerList(final @NotNull Class<? extends Event> eventClass) {
+        final HandlerList cached = handlerLists.get(eventClass);
+        if (cached != null) return cached;
+        Class<?> clazz = eventClass;
+        while (clazz != null && Event.class.isAssignableFrom(clazz)) {
+            final Method method;
             try {
-                sub.subscribeMethod().invoke(sub.fuzeItem(), event);
+                method = clazz.getDeclaredMethod("getHandlerList");
+            } catch (NoSuchMethodException e) {
+                clazz = clazz.getSuperclass();
+                continue;
+            }
+            final HandlerList handlerList;
+            try {
+                method.setAccessible(true);
+                handlerList = (HandlerList) method.invoke(null);
             } catch (IllegalAccessException | InvocationTargetException e) {
-                throw new IllegalStateException("Couldn't invoke subscribe method: " + sub.subscribeMethod().getName(), e);
+                throw new IllegalStateException("Couldn't get handler list of event: " + eventClass.getName(), e);
+            }
+            handlerLists.put(eventClass, handlerList);
+            return handlerList;
+        }
+        throw new IllegalStateException(
+                "No static getHandlerList method was found for event: " + eventClass.getName()
+        );
+    }
+
+    /**
+     * Binds a subscribe method to an {@link EventInvoker} using the {@link LambdaMetafactory}.
+     * <p>Instance methods are invoked on the fuze item passed to the invoker,
+     * static methods are bound to {@link EventInvoker.Static} first.</p>
+     * <p>The {@link LambdaMetafactory} requires a lookup with full privilege access. Item classes of other plugins
+     * are loaded by other class loaders, so the lookup into them lacks it, their subscribe methods are invoked
+     * through the method handle instead, see {@link EventManager#handleInvoker(SubscriptionIndex.Entry, MethodHandle)}.</p>
+     *
+     * @param itemClass the fuze item Class declaring the subscribe method
+     * @param entry     the subscribe method to bind
+     * @return the bound invoker
+     * @throws IllegalStateException when the method could not be bound
+     */
+    private static @NotNull EventInvoker bindInvoker(final @NotNull Class<? extends FuzeItem> itemClass,
+                                                     final @NotNull SubscriptionIndex.Entry entry) {
+        final MethodType methodType = MethodType.methodType(void.class, entry.eventClass());
+        try {
+            // The lookup has to be done in the declaring class, subscribe methods are usually private
+            final MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(itemClass, MethodHandles.lookup());
+            final MethodHandle handle = entry.isStatic()
+                    ? lookup.findStatic(itemClass, entry.methodName(), methodType)
+                    : lookup.findVirtual(itemClass, entry.methodName(), methodType);
+            if (!lookup.hasFullPrivilegeAccess()) return EventManager.handleInvoker(entry, handle);
+            if (entry.isStatic()) {
+                final CallSite site = LambdaMetafactory.metafactory(
+                        lookup,
+                        "invoke",
+                        MethodType.methodType(EventInvoker.Static.class),
+                        MethodType.methodType(void.class, Event.class),
+                        handle,
+                        methodType
+                );
+                final EventInvoker.Static invoker = (EventInvoker.Static) site.getTarget().invoke();
+                return (fuzeItem, event) -> invoker.invoke(event);
             }
-        });
+            final CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "invoke",
+                    MethodType.methodType(EventInvoker.class),
+                    MethodType.methodType(void.class, FuzeItem.class, Event.class),
+                    handle,
+                    MethodType.methodType(void.class, itemClass, entry.eventClass())
+            );
+            return (EventInvoker) site.getTarget().invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Couldn't bind subscribe method: " + entry.methodName(), e);
+        }
+    }
+
+    /**
+     * Binds a subscribe method to an {@link EventInvoker} calling its method handle.
+     * <p>Slower than the invokers spun by the {@link LambdaMetafactory}, but works with any lookup
+     * that can access the method.</p>
+     *
+     * @param entry  the subscribe method to bind
+     * @param handle the method handle of the subscribe method
+     * @return the bound invoker
+     */
+    private static @NotNull EventInvoker handleInvoker(final @NotNull SubscriptionIndex.Entry entry,
+                                                       final @NotNull MethodHandle handle) {
+        if (entry.isStatic()) {
+            final MethodHandle exact = handle.asType(MethodType.methodType(void.class, Event.class));
+            return (fuzeItem, event) -> {
+                try {
+                    exact.invokeExact(event);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException("Subscribe method threw a checked exception: " + entry.methodName(), e);
+                }
+            };
+        }
+        final MethodHandle exact = handle.asType(MethodType.methodType(void.class, FuzeItem.class, Event.class));
+        return (fuzeItem, event) -> {
+            try {
+                exact.invokeExact(fuzeItem, event);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Subscribe method threw a checked exception: " + entry.methodName(), e);
+            }
+        };
     }
 
     /**
      * Registers all events in a fuze item Class.
+     * <p>The subscribe methods are read from the compile-time {@link SubscriptionIndex}.
+     * Subscriptions belong to the Class, routed instance methods are invoked on the item instance the event was routed to.</p>
      *
-     * @param itemClass the fuze item Class.
-     * @param fuzeItem  the concrete implementation of the fuze item Class
+     * @param itemClass the fuze item Class
      * @param force     whether to force the registration even when the Class was already registered before
-     * @param <T>       the fuze item
      */
-    public <T extends FuzeItem> void registerEvents(final @NotNull Class<? extends FuzeItem> itemClass, final @NotNull T fuzeItem, final boolean force) {
+    public void registerEvents(final @NotNull Class<? extends FuzeItem> itemClass, final boolean force) {
         if (!force && subscribers.contains(itemClass)) return;
-        for (Method method : itemClass.getDeclaredMethods()) {
-            if (!method.isAnnotationPresent(Subscribe.class)) continue;
-            method.setAccessible(true);
-            if (method.getParameterCount() != 1 || !Event.class.isAssignableFrom(method.getParameterTypes()[0]))
-                throw new IllegalStateException(
-                        "A subscribe method doesn't have only one (? extends %s) parameter: %s"
-                                .formatted(Event.class.getName(), method.getName())
-                );
-            @SuppressWarnings("unchecked") Class<? extends Event> eventClass = (Class<? extends Event>) method.getParameterTypes()[0];
-            events.computeIfAbsent(eventClass, event -> new HashSet<>());
-            events.get(eventClass).add(new Subscription(method, fuzeItem));
+        if (force) unregisterEvents(itemClass);
+        final Set<Bucket> changed = new HashSet<>();
+        for (SubscriptionIndex.Entry entry : SubscriptionIndex.getSubscriptions(itemClass)) {
+            final Bucket bucket = buckets[EventManager.bucketIndex(entry.priority(), entry.ignoreCancelled())];
+            bucket.events.computeIfAbsent(entry.eventClass(), event -> new LinkedHashSet<>());
+            bucket.events.get(entry.eventClass()).add(new Subscription(
+                    itemClass,
+                    entry,
+                    EventManager.bindInvoker(itemClass, entry)
+            ));
+            changed.add(bucket);
         }
         subscribers.add(itemClass);
+        changed.forEach(Bucket::subscriptionsChanged);
+    }
+
+    /**
+     * Unregisters all events in a fuze item Class.
+     * <p>When the last subscription of an event is removed, Fuze stops listening to the event.</p>
+     *
+     * @param itemClass the fuze item Class
+     */
+    public void unregisterEvents(final @NotNull Class<? extends FuzeItem> itemClass) {
+        if (!subscribers.remove(itemClass)) return;
+        for (Bucket bucket : buckets) {
+            boolean changed = false;
+            for (Set<Subscription> subscriptions : bucket.events.values())
+                changed |= subscriptions.removeIf(sub -> sub.itemClass() == itemClass);
+            if (!changed) continue;
+            bucket.events.values().removeIf(Set::isEmpty);
+            bucket.subscriptionsChanged();
+        }
     }
 
     /**
-     * Registers all events in all superclasses of the provided item going all the way up to {@link FuzeItem}.
+     * Clears all event registrations and stops listening to all events.
+     * <p>After calling this method, all events should be registered again.</p>
+     */
+    public void reset() {
+        subscribers.clear();
+        for (Bucket bucket : buckets) {
+            bucket.events.clear();
+            bucket.subscriptionsChanged();
+        }
+    }
+
+    /**
+     * Registers all events in the provided item Class and all its superclasses going all the way up to {@link FuzeItem}.
      *
-     * @param fuzeItem the concrete implementation of fuze item to register
-     * @param force    whether to force the registration of all Classes even when the Class was already registered before
-     * @param <T>      the fuze item
+     * @param itemClass the fuze item Class to register
+     * @param force     whether to force the registration of all Classes even when the Class was already registered before
      */
-    public <T extends FuzeItem> void registerEventsTree(final @NotNull T fuzeItem, final boolean force) {
-        Class<? extends FuzeItem> regClass = fuzeItem.getClass();
+    public void registerEventsTree(final @NotNull Class<? extends FuzeItem> itemClass, final boolean force) {
+        Class<? extends FuzeItem> regClass = itemClass;
 
         while (true) {
-            registerEvents(regClass, fuzeItem, force);
+            registerEvents(regClass, force);
             if (regClass == FuzeItem.class) return;
             @SuppressWarnings("unchecked") Class<? extends FuzeItem> parent = (Class<? extends FuzeItem>) regClass.getSuperclass();
             regClass = parent;
         }
     }
+
+    /**
+     * Represents the dispatch timings of all subscriptions recorded in one window.
+     *
+     * @param windowNanos   the length of the window in nanoseconds
+     * @param subscriptions the timings of all subscriptions invoked in the window, sorted by total time descending
+     */
+    public record TimingsReport(long windowNanos, @NotNull List<SubscriptionTimings.Snapshot> subscriptions) {
+    }
+
+    /**
+     * Enables or disables recording of dispatch timings.
+     * <p>While disabled, dispatching an event costs just one additional field read.</p>
+     *
+     * @param enabled true to start recording timings, false to stop
+     */
+    public void setTimingsEnabled(final boolean enabled) {
+        if (enabled && !timingsEnabled) drainTimings(); // Start a fresh window
+        timingsEnabled = enabled;
+    }
+
+    /**
+     * Returns whether dispatch timings are being recorded.
+     *
+     * @return true when timings are being recorded otherwise false
+     */
+    public boolean isTimingsEnabled() {
+        return timingsEnabled;
+    }
+
+    /**
+     * Returns the dispatch timings recorded since the last call and starts a new window.
+     *
+     * @return the timings report of the ended window
+     */
+    public @NotNull TimingsReport drainTimings() {
+        final long now = System.nanoTime();
+        final List<SubscriptionTimings.Snapshot> snapshots = new ArrayList<>();
+        for (Bucket bucket : buckets) {
+            for (Set<Subscription> subscriptions : bucket.events.values()) {
+                for (Subscription sub : subscriptions) {
+                    final SubscriptionTimings.Snapshot snapshot = sub.timings().drain();
+                    if (snapshot.count() > 0) snapshots.add(snapshot);
+                }
+            }
+        }
+        snapshots.sort(Comparator.comparingLong(SubscriptionTimings.Snapshot::totalNanos).reversed());
+        final long windowNanos = now - timingsWindowStart;
+        timingsWindowStart = now;
+        return new TimingsReport(windowNanos, snapshots);
+    }
 }
@@ -0,0 +1,95 @@
+package cz.jeme.programu.fuze.item.event;
+
+import cz.jeme.programu.fuze.item.FuzeItem;
+import cz.jeme.programu.fuze.util.Bullet;
+import org.bukkit.entity.Entity;
+import org.bukkit.event.Event;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityEvent;
+import org.bukkit.event.player.PlayerEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Represents the fuze item an event is routed to.
+ * <p>A routed subscription is only invoked when the event concerns an instance of the item class declaring it.
+ * The fuze item is resolved by {@link EventManager} just once per event and route.</p>
+ */
+public enum Route {
+    /**
+     * The event is not routed, the subscription receives every event.
+     */
+    NONE {
+        @Override
+        @Nullable FuzeItem resolve(final @NotNull Event event) {
+            return null;
+        }
+    },
+
+    /**
+     * The event is routed to the item the player interacts with ({@link PlayerInteractEvent})
+     * or holds in the main hand (other {@link PlayerEvent}s).
+     * <p>Interactions with a denied item use ({@link PlayerInteractEvent#useItemInHand()}), e.g. denied
+     * by protection plugins, are not routed, so no item is resolved for them.</p>
+     */
+    HELD_ITEM {
+        @Override
+        @Nullable FuzeItem resolve(final @NotNull Event event) {
+            final ItemStack item;
+            if (event instanceof PlayerInteractEvent interactEvent) {
+                // Checked before the item meta is copied, denied interactions are common in protected regions
+                if (interactEvent.useItemInHand() == Event.Result.DENY) return null;
+                item = interactEvent.getItem();
+            } else if (event instanceof PlayerEvent playerEvent) {
+                item = playerEvent.getPlayer().getInventory().getItemInMainHand();
+            } else {
+                return null;
+            }
+            return item == null ? null : Route.resolve(item);
+        }
+    },
+
+    /**
+     * The event is routed to the item that spawned the damager of an {@link EntityDamageByEntityEvent},
+     * e.g. the gun of a bullet.
+     */
+    DAMAGER {
+        @Override
+        @Nullable FuzeItem resolve(final @NotNull Event event) {
+            return event instanceof EntityDamageByEntityEvent damageEvent
+                    ? Route.resolve(damageEvent.getDamager())
+                    : null;
+        }
+    },
+
+    /**
+     * The event is routed to the item that spawned the entity of an {@link EntityEvent},
+     * e.g. the gun of a bullet.
+     */
+    ENTITY {
+        @Override
+        @Nullable FuzeItem resolve(final @NotNull Event event) {
+            return event instanceof EntityEvent entityEvent
+                    ? Route.resolve(entityEvent.getEntity())
+                    : null;
+        }
+    };
+
+    /**
+     * Resolves the fuze item an event is routed to.
+     *
+     * @param event the event to resolve the fuze item from
+     * @return the resolved fuze item or null when the event does not concern any fuze item
+     */
+    abstract @Nullable FuzeItem resolve(final @NotNull Event event);
+
+    private static @Nullable FuzeItem resolve(final @NotNull ItemStack item) {
+        return FuzeItem.resolve(item).orElse(null);
+    }
+
+    private static @Nullable FuzeItem resolve(final @NotNull Entity entity) {
+        return Bullet.getGun(entity).orElse(null);
+    }
+}
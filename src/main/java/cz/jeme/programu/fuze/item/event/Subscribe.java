@@ -1,6 +1,7 @@
 package cz.jeme.programu.fuze.item.event;
 
 import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
 
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -10,8 +11,41 @@ import java.lang.annotation.Target;
 /**
  * An annotation marking a method as an event subscriber.
  * The method must have one single parameter that inherits {@link Event}.
+ * <p>The method also receives all subclasses of its event fired through a handler list Fuze listens to,
+ * e.g. a subscription on {@link org.bukkit.event.entity.EntityDamageEvent} receives
+ * {@link org.bukkit.event.entity.EntityDamageByEntityEvent} too.</p>
+ * <p>Subscribe methods are indexed at compile time by the
+ * {@link cz.jeme.programu.fuze.item.event.processor.SubscribeProcessor}.</p>
+ *
+ * @see Route
  */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Subscribe {
+    /**
+     * Returns the route of the subscription.
+     * <p>Routed subscriptions only receive events concerning an instance of the item class declaring them.
+     * Routed instance methods are invoked on the resolved item instance.
+     * Subscriptions that are not routed have to be static.</p>
+     *
+     * @return the route of the subscription
+     */
+    Route route() default Route.NONE;
+
+    /**
+     * Returns the priority of the subscription.
+     * <p>Works just like {@link org.bukkit.event.EventHandler#priority()}.</p>
+     *
+     * @return the priority of the subscription
+     */
+    EventPriority priority() default EventPriority.NORMAL;
+
+    /**
+     * Returns whether the subscription ignores cancelled events.
+     * <p>Works just like {@link org.bukkit.event.EventHandler#ignoreCancelled()},
+     * cancelled events are skipped before the event is routed.</p>
+     *
+     * @return true when cancelled events are not passed to the subscription
+     */
+    boolean ignoreCancelled() default false;
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package cz.jeme.programu.fuze.item.event;
+
+import cz.jeme.programu.fuze.item.FuzeItem;
+import cz.jeme.programu.fuze.item.event.processor.SubscribeProcessor;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides the subscribe methods declared in fuze item classes.
+ * <p>The subscribe methods are read from the index generated at compile time by {@link SubscribeProcessor}.
+ * Only classes missing from the index (e.g. items of other plugins compiled without the processor)
+ * are scanned using reflection.</p>
+ */
+final class SubscriptionIndex {
+    private static final @NotNull Map<String, List<Entry>> INDEX = SubscriptionIndex.load();
+
+    private SubscriptionIndex() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Represents a subscribe method declared in a fuze item class.
+     *
+     * @param methodName      the name of the subscribe method
+     * @param eventClass      the event class the subscribe method accepts
+     * @param isStatic        whether the subscribe method is static
+     * @param route           the route of the subscribe method
+     * @param priority        the priority of the subscribe method
+     * @param ignoreCancelled whether the subscribe method ignores cancelled events
+     */
+    record Entry(@NotNull String methodName,
+                 @NotNull Class<? extends Event> eventClass,
+                 boolean isStatic,
+                 @NotNull Route route,
+                 @NotNull EventPriority priority,
+                 boolean ignoreCancelled) {
+    }
+
+    /**
+     * Returns the subscribe methods declared in a fuze item class.
+     *
+     * @param itemClass the fuze item class
+     * @return the subscribe methods declared directly in the class
+     * @throws IllegalStateException when a scanned subscribe method doesn't have only one event parameter
+     *                               or when it is neither static nor routed
+     */
+    static @NotNull List<Entry> getSubscriptions(final @NotNull Class<? extends FuzeItem> itemClass) {
+        final List<Entry> indexed = SubscriptionIndex.INDEX.get(itemClass.getName());
+        return indexed != null ? indexed : SubscriptionIndex.scan(itemClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static @NotNull Map<String, List<Entry>> load() {
+        final Class<?> generated;
+        try {
+            generated = Class.forName(
+                    SubscribeProcessor.INDEX_PACKAGE + "." + SubscribeProcessor.INDEX_NAME,
+                    true,
+                    SubscriptionIndex.class.getClassLoader()
+            );
+        } catch (ClassNotFoundException e) {
+            return Map.of(); // Compiled without the processor, everything will be scanned
+        }
+        try {
+            return (Map<String, List<Entry>>) generated.getDeclaredField("INDEX").get(null);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new IllegalStateException("The generated subscription index is corrupted!", e);
+        }
+    }
+
+    private static @NotNull List<Entry> scan(final @NotNull Class<? extends FuzeItem> itemClass) {
+        final List<Entry> entries = new ArrayList<>();
+        for (Method method : itemClass.getDeclaredMethods()) {
+            if (!method.isAnnotationPresent(Subscribe.class)) continue;
+            if (method.getParameterCount() != 1 || !Event.class.isAssignableFrom(method.getParameterTypes()[0]))
+                throw new IllegalStateException(
+                        "A subscribe method doesn't have only one (? extends %s) parameter: %s"
+                                .formatted(Event.class.getName(), method.getName())
+                );
+            final boolean isStatic = Modifier.isStatic(method.getModifiers());
+            final Subscribe subscribe = method.getAnnotation(Subscribe.class);
+            final Route route = subscribe.route();
+            if (!isStatic && route == Route.NONE)
+                throw new IllegalStateException("A subscribe method that is not routed must be static: " + method.getName());
+            @SuppressWarnings("unchecked") Class<? extends Event> eventClass = (Class<? extends Event>) method.getParameterTypes()[0];
+            entries.add(new Entry(method.getName(), eventClass, isStatic, route, subscribe.priority(), subscribe.ignoreCancelled()));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,84 @@
+package cz.jeme.programu.fuze.item.event;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the dispatch timings of one subscription.
+ * <p>All counters are lock-free. Timings are only recorded while they are enabled in {@link EventManager}.</p>
+ */
+public final class SubscriptionTimings {
+    /**
+     * The number of histogram buckets, bucket {@code i} counts invocations that took [2^i, 2^(i+1)) nanoseconds.
+     */
+    public static final int BUCKETS = Long.SIZE;
+
+    private final @NotNull String name;
+    private final @NotNull LongAdder count = new LongAdder();
+    private final @NotNull LongAdder totalNanos = new LongAdder();
+    private final @NotNull AtomicLongArray histogram = new AtomicLongArray(SubscriptionTimings.BUCKETS);
+
+    SubscriptionTimings(final @NotNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records one invocation of the subscription.
+     *
+     * @param nanos the duration of the invocation in nanoseconds
+     */
+    void record(final long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        histogram.incrementAndGet(nanos <= 0 ? 0 : Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * Returns the timings recorded so far and resets all counters.
+     *
+     * @return the recorded timings
+     */
+    @NotNull Snapshot drain() {
+        final long[] buckets = new long[SubscriptionTimings.BUCKETS];
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] = histogram.getAndSet(i, 0);
+        return new Snapshot(name, count.sumThenReset(), totalNanos.sumThenReset(), buckets);
+    }
+
+    /**
+     * Represents the timings of one subscription recorded in one window.
+     *
+     * @param name       the name of the subscription, e.g. {@code Gun#onPlayerInteract}
+     * @param count      the number of invocations
+     * @param totalNanos the total time spent in the subscription in nanoseconds
+     * @param histogram  the log2 histogram of invocation durations, see {@link SubscriptionTimings#BUCKETS}
+     */
+    public record Snapshot(@NotNull String name, long count, long totalNanos, long @NotNull [] histogram) {
+        /**
+         * Returns the mean duration of one invocation.
+         *
+         * @return the mean duration in nanoseconds
+         */
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * Returns the upper bound of the histogram bucket containing the provided percentile.
+         *
+         * @param percentile the percentile in range (0, 1], e.g. 0.99
+         * @return the upper bound of the percentile duration in nanoseconds
+         */
+        public long percentileNanos(final double percentile) {
+            final long target = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= target && seen > 0) return i + 1 < Long.SIZE - 1 ? 1L << (i + 1) : Long.MAX_VALUE;
+            }
+            return 0;
+        }
+    }
+}
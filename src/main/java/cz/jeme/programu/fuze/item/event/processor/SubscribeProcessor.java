@@ -0,0 +1,171 @@
+package cz.jeme.programu.fuze.item.event.processor;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * An annotation processor generating the compile-time subscription index.
+ * <p>The index lists the subscribe methods of every fuze item class compiled together with Fuze,
+ * so event registration does not have to scan the item classes using reflection.</p>
+ * <p>The processor is run by the Maven build, it is not used at runtime.</p>
+ */
+@SupportedAnnotationTypes(SubscribeProcessor.SUBSCRIBE)
+public final class SubscribeProcessor extends AbstractProcessor {
+    /**
+     * The fully qualified name of the subscribe annotation.
+     */
+    static final String SUBSCRIBE = "cz.jeme.programu.fuze.item.event.Subscribe";
+    private static final String FUZE_ITEM = "cz.jeme.programu.fuze.item.FuzeItem";
+    private static final String EVENT = "org.bukkit.event.Event";
+    private static final String ROUTE = "cz.jeme.programu.fuze.item.event.Route";
+    private static final String EVENT_PRIORITY = "org.bukkit.event.EventPriority";
+
+    /**
+     * The package of the generated index.
+     */
+    public static final String INDEX_PACKAGE = "cz.jeme.programu.fuze.item.event";
+
+    /**
+     * The simple name of the generated index class.
+     */
+    public static final String INDEX_NAME = "GeneratedSubscriptionIndex";
+
+    private boolean generated = false;
+
+    @Override
+    public @NotNull SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final @NotNull Set<? extends TypeElement> annotations, final @NotNull RoundEnvironment roundEnv) {
+        // The subscribe annotation is claimed, no other processor handles it
+        if (generated || roundEnv.processingOver()) return true;
+        final TypeElement subscribe = processingEnv.getElementUtils().getTypeElement(SubscribeProcessor.SUBSCRIBE);
+        final TypeElement fuzeItem = processingEnv.getElementUtils().getTypeElement(SubscribeProcessor.FUZE_ITEM);
+        final TypeElement event = processingEnv.getElementUtils().getTypeElement(SubscribeProcessor.EVENT);
+        if (subscribe == null || fuzeItem == null || event == null) return false;
+        final TypeMirror fuzeItemType = processingEnv.getTypeUtils().erasure(fuzeItem.asType());
+        final TypeMirror eventType = processingEnv.getTypeUtils().erasure(event.asType());
+
+        // Every fuze item class is indexed, even without subscribe methods, so it does not have to be scanned
+        final Map<String, List<String>> index = new TreeMap<>();
+        final List<Element> origins = new ArrayList<>();
+        for (TypeElement type : SubscribeProcessor.collectTypes(roundEnv.getRootElements())) {
+            if (!processingEnv.getTypeUtils().isSubtype(processingEnv.getTypeUtils().erasure(type.asType()), fuzeItemType))
+                continue;
+            index.put(processingEnv.getElementUtils().getBinaryName(type).toString(), new ArrayList<>());
+            origins.add(type);
+        }
+
+        for (ExecutableElement method : ElementFilter.methodsIn(roundEnv.getElementsAnnotatedWith(subscribe))) {
+            final TypeElement owner = (TypeElement) method.getEnclosingElement();
+            final List<String> entries = index.get(processingEnv.getElementUtils().getBinaryName(owner).toString());
+            if (entries == null) {
+                error(method, "A subscribe method must be declared in a %s: %s".formatted(SubscribeProcessor.FUZE_ITEM, method));
+                continue;
+            }
+            final List<? extends VariableElement> parameters = method.getParameters();
+            if (parameters.size() != 1 || !processingEnv.getTypeUtils().isSubtype(processingEnv.getTypeUtils().erasure(parameters.get(0).asType()), eventType)) {
+                error(method, "A subscribe method doesn't have only one (? extends %s) parameter: %s".formatted(SubscribeProcessor.EVENT, method));
+                continue;
+            }
+            final boolean isStatic = method.getModifiers().contains(Modifier.STATIC);
+            final String route = annotationValue(method, subscribe, "route");
+            if (!isStatic && route.equals("NONE")) {
+                error(method, "A subscribe method that is not routed must be static: " + method);
+                continue;
+            }
+            entries.add("new SubscriptionIndex.Entry(\"%s\", %s.class, %s, %s.%s, %s.%s, %s)".formatted(
+                    method.getSimpleName(),
+                    processingEnv.getTypeUtils().erasure(parameters.get(0).asType()),
+                    isStatic,
+                    SubscribeProcessor.ROUTE,
+                    route,
+                    SubscribeProcessor.EVENT_PRIORITY,
+                    annotationValue(method, subscribe, "priority"),
+                    annotationValue(method, subscribe, "ignoreCancelled")
+            ));
+        }
+
+        write(index, origins);
+        generated = true;
+        return true;
+    }
+
+    private @NotNull String annotationValue(final @NotNull Element element,
+                                            final @NotNull TypeElement annotation,
+                                            final @NotNull String name) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().asElement().equals(annotation)) continue;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value :
+                    processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+                if (!value.getKey().getSimpleName().contentEquals(name)) continue;
+                // Enum constants are represented by their variable element
+                return value.getValue().getValue() instanceof VariableElement constant
+                        ? constant.getSimpleName().toString()
+                        : String.valueOf(value.getValue().getValue());
+            }
+        }
+        throw new IllegalArgumentException("No value \"%s\" found in %s on %s".formatted(name, annotation, element));
+    }
+
+    private static @NotNull List<TypeElement> collectTypes(final @NotNull Collection<? extends Element> elements) {
+        final List<TypeElement> types = new ArrayList<>();
+        for (TypeElement type : ElementFilter.typesIn(elements)) {
+            types.add(type);
+            types.addAll(SubscribeProcessor.collectTypes(type.getEnclosedElements()));
+        }
+        return types;
+    }
+
+    private void write(final @NotNull Map<String, List<String>> index, final @NotNull List<Element> origins) {
+        final String name = SubscribeProcessor.INDEX_PACKAGE + "." + SubscribeProcessor.INDEX_NAME;
+        try (PrintWriter writer = new PrintWriter(processingEnv.getFiler()
+                .createSourceFile(name, origins.toArray(Element[]::new))
+                .openWriter())) {
+            writer.println("package " + SubscribeProcessor.INDEX_PACKAGE + ";");
+            writer.println();
+            writer.println("import java.util.List;");
+            writer.println("import java.util.Map;");
+            writer.println();
+            writer.println("/**");
+            writer.println(" * The compile-time subscription index generated by " + SubscribeProcessor.class.getName() + ".");
+            writer.println(" * <p>Do not edit, this class is regenerated on every build.</p>");
+            writer.println(" */");
+            writer.println("final class " + SubscribeProcessor.INDEX_NAME + " {");
+            writer.println("    static final Map<String, List<SubscriptionIndex.Entry>> INDEX = Map.ofEntries(");
+            final Iterator<Map.Entry<String, List<String>>> iterator = index.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<String, List<String>> entry = iterator.next();
+                writer.println("            Map.entry(\"" + entry.getKey() + "\", List.of(");
+                for (int i = 0; i < entry.getValue().size(); i++)
+                    writer.println("                    " + entry.getValue().get(i) + (i + 1 < entry.getValue().size() ? "," : ""));
+                writer.println("            ))" + (iterator.hasNext() ? "," : ""));
+            }
+            writer.println("    );");
+            writer.println();
+            writer.println("    private " + SubscribeProcessor.INDEX_NAME + "() {");
+            writer.println("        throw new AssertionError();");
+            writer.println("    }");
+            writer.println("}");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Couldn't write the subscription index: " + e);
+        }
+    }
+
+    private void error(final @NotNull Element element, final @NotNull String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
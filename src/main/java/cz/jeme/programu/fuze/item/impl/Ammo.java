@@ -1,13 +1,15 @@
 package cz.jeme.programu.fuze.item.impl;
 
 import cz.jeme.programu.fuze.item.FuzeItem;
-import cz.jeme.programu.fuze.item.ItemManager;
+import cz.jeme.programu.fuze.item.ItemRegistry;
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Optional;
+
 /**
  * Represents an ammo in the Fuze plugin.
  */
@@ -55,11 +57,22 @@ public class Ammo extends FuzeItem {
         return FuzeItem.valueOf(item, Ammo.class);
     }
 
+    /**
+     * Resolves the Ammo of an {@link ItemStack}.
+     * <p>The key data is read just once, see {@link FuzeItem#resolve(ItemStack, Class)}.</p>
+     *
+     * @param item the ItemStack to read the key from
+     * @return the Ammo of the ItemStack or an empty optional when the ItemStack is not an Ammo
+     */
+    public static @NotNull Optional<Ammo> resolve(final @Nullable ItemStack item) {
+        return FuzeItem.resolve(item, Ammo.class);
+    }
+
 
     /**
      * Initializes an Ammo.
      * <p><b>This constructor and constructors of this classes inheritors should never be called manually!</b></p>
-     * <p>Items are initialized automatically using reflection in {@link ItemManager} during item registration!</p>
+     * <p>Items are initialized automatically using reflection in {@link ItemRegistry.Builder} during item registration!</p>
      *
      * @param section the {@link ConfigurationSection} of the Ammo instance in config
      */
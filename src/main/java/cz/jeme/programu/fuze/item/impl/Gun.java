@@ -1,25 +1,46 @@
 package cz.jeme.programu.fuze.item.impl;
 
+import com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent;
+import cz.jeme.programu.fuze.Config;
+import cz.jeme.programu.fuze.game.BulletEngine;
+import cz.jeme.programu.fuze.game.BulletPath;
+import cz.jeme.programu.fuze.game.Shooters;
 import cz.jeme.programu.fuze.util.Bullet;
+import cz.jeme.programu.fuze.util.MaterialTable;
 import cz.jeme.programu.fuze.item.FuzeItem;
-import cz.jeme.programu.fuze.item.ItemManager;
+import cz.jeme.programu.fuze.item.ItemRegistry;
+import cz.jeme.programu.fuze.item.event.Route;
 import cz.jeme.programu.fuze.item.event.Subscribe;
 import cz.jeme.programu.fuze.item.storage.FuzePersistentData;
 import cz.jeme.programu.fuze.item.storage.PersistentData;
+import cz.jeme.programu.fuze.item.storage.StatBlockType;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.*;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.ProjectileHitEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.CrossbowMeta;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.util.Vector;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.ByteBuffer;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.Set;
 
 /**
  * Represents a gun in the Fuze plugin.
@@ -69,26 +90,83 @@ public class Gun extends FuzeItem {
         return FuzeItem.exists(item, Gun.class);
     }
 
+    /**
+     * Resolves the Gun of an {@link ItemStack}.
+     * <p>The key data is read just once, see {@link FuzeItem#resolve(ItemStack, Class)}.</p>
+     *
+     * @param item the ItemStack to read the key from
+     * @return the Gun of the ItemStack or an empty optional when the ItemStack is not a Gun
+     */
+    public static @NotNull Optional<Gun> resolve(final @Nullable ItemStack item) {
+        return FuzeItem.resolve(item, Gun.class);
+    }
+
+    /**
+     * Gun stats data storage.
+     * <p>All the gun stats packed into a single tag, see {@link Stats}.</p>
+     */
+    public static final @NotNull PersistentData<byte[], Stats> STATS = new FuzePersistentData<>("gun_stats", Stats.TYPE);
+
     /**
      * Gun shoot cooldown data storage.
+     * <p>No longer written nor read, the shoot cooldown is taken from the config of the Gun.</p>
      */
     public static final @NotNull PersistentData<Integer, Integer> SHOOT_COOLDOWN = new FuzePersistentData<>("gun_shoot_cooldown", PersistentData.INTEGER);
 
     /**
      * Gun damage data storage.
+     * <p>No longer written, only read from guns created before {@link Gun#STATS} was introduced.</p>
      */
     public static final @NotNull PersistentData<Double, Double> DAMAGE = new FuzePersistentData<>("gun_damage", PersistentData.DOUBLE);
 
     /**
      * Gun velocity data storage.
+     * <p>No longer written, only read from guns created before {@link Gun#STATS} was introduced.</p>
      */
     public static final @NotNull PersistentData<Double, Double> VELOCITY = new FuzePersistentData<>("gun_velocity", PersistentData.DOUBLE);
 
+    /**
+     * The range of hitscan guns without a range set in config.
+     */
+    public static final double DEFAULT_RANGE = 100;
+
+    /**
+     * The gravity of simulated guns without a gravity set in config.
+     */
+    public static final double DEFAULT_GRAVITY = 0.05;
+
+    /**
+     * The drag of simulated guns without a drag set in config.
+     */
+    public static final double DEFAULT_DRAG = 0.01;
+
+    /**
+     * The lifetime of simulated bullets of guns without a lifetime set in config.
+     */
+    public static final int DEFAULT_LIFETIME = 100;
+
+    /**
+     * The penetration power of guns without a penetration set in config.
+     */
+    public static final double DEFAULT_PENETRATION = 1;
+
+    /**
+     * The path traced by hitscan shots, reused for every shot.
+     * <p>Only accessed from the main thread.</p>
+     */
+    private static final @NotNull BulletPath HITSCAN_PATH = new BulletPath();
+
+    /**
+     * The key of the ammo of this Gun.
+     * <p>Read from the config.</p>
+     */
+    private final @NotNull String ammoKey;
+
     /**
      * The ammo of this Gun.
-     * <p>Read from the config and then parsed using {@link Ammo#valueOf(String)}.</p>
+     * <p>Parsed from {@link Gun#ammoKey} using {@link Ammo#valueOf(String)} when linked.</p>
      */
-    private final @NotNull Ammo ammo;
+    private @Nullable Ammo ammo;
 
     /**
      * The shoot cooldown of this Gun in milliseconds.
@@ -105,38 +183,88 @@ public class Gun extends FuzeItem {
 
     /**
      * The velocity of this Gun's bullets.
-     * <p>Read from the config.</p>
+     * <p>Read from the config, see {@link Gun#getVelocity()}.</p>
      */
     private final double velocity;
 
+    /**
+     * The firing mode of this Gun.
+     * <p>Read from the config, {@link Mode#PROJECTILE} when not set.</p>
+     */
+    private final @NotNull Mode mode;
+
+    /**
+     * The maximum distance of this Gun's hitscan shots in blocks.
+     * <p>Read from the config, {@link Gun#DEFAULT_RANGE} when not set.</p>
+     */
+    private final double range;
+
+    /**
+     * The gravity of this Gun's simulated bullets in blocks per tick squared.
+     * <p>Read from the config, {@link Gun#DEFAULT_GRAVITY} when not set.</p>
+     */
+    private final double gravity;
+
+    /**
+     * The fraction of velocity this Gun's simulated bullets lose every tick.
+     * <p>Read from the config, {@link Gun#DEFAULT_DRAG} when not set.</p>
+     */
+    private final double drag;
+
+    /**
+     * The maximum age of this Gun's simulated bullets in ticks.
+     * <p>Read from the config, {@link Gun#DEFAULT_LIFETIME} when not set.</p>
+     */
+    private final int lifetime;
+
+    /**
+     * Whether this Gun keeps firing while the trigger is held.
+     * <p>Read from the config, false when not set.</p>
+     */
+    private final boolean automatic;
+
+    /**
+     * The penetration power of this Gun's hitscan and simulated bullets.
+     * <p>Read from the config, {@link Gun#DEFAULT_PENETRATION} when not set.</p>
+     */
+    private final double penetration;
+
     /**
      * Initializes a Gun.
      * <p><b>This constructor and constructors of this classes inheritors should never be called manually!</b></p>
-     * <p>Items are initialized automatically using reflection in {@link ItemManager} during item registration!</p>
+     * <p>Items are initialized automatically using reflection in {@link ItemRegistry.Builder} during item registration!</p>
      *
      * @param section the {@link ConfigurationSection} of the gun instance in config
      * @throws IllegalArgumentException when the section name (gun key) doesn't match [a-z0-9_.-],
-     *                                  when no rarity with the rarity key exists
-     *                                  and when no ammo with the ammo key exists
+     *                                  when no rarity with the rarity key exists or when the mode is invalid
      * @throws NullPointerException     when name, rarity, ammo, shoot cooldown or damage is not set in config
      */
     protected Gun(final @NotNull ConfigurationSection section) {
         super(section);
 
         // Load gun data from config
-        ammo = Ammo.valueOf(requireConfigString("ammo"));
+        ammoKey = requireConfigString("ammo");
         shootCooldown = requireConfigInt("shoot-cooldown");
         damage = requireConfigDouble("damage");
         velocity = requireConfigDouble("velocity");
+        String modeName = section.getString("mode", "projectile");
+        try {
+            mode = Mode.valueOf(modeName.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid mode \"%s\" in gun \"%s\"!".formatted(modeName, key), e);
+        }
+        range = section.getDouble("range", Gun.DEFAULT_RANGE);
+        gravity = section.getDouble("gravity", Gun.DEFAULT_GRAVITY);
+        drag = section.getDouble("drag", Gun.DEFAULT_DRAG);
+        lifetime = section.getInt("lifetime", Gun.DEFAULT_LIFETIME);
+        automatic = section.getBoolean("automatic", false);
+        penetration = section.getDouble("penetration", Gun.DEFAULT_PENETRATION);
 
         // Save gun data to the item
-        Gun.SHOOT_COOLDOWN.write(item, shootCooldown);
-        Gun.DAMAGE.write(item, damage);
-        Gun.VELOCITY.write(item, velocity);
-
-        CrossbowMeta crossbowMeta = ((CrossbowMeta) item.getItemMeta());
-        crossbowMeta.addChargedProjectile(Bullet.CROSSBOW_ARROW);
-        item.setItemMeta(crossbowMeta);
+        PersistentData.batch(item)
+                .write(Gun.STATS, new Stats(damage, velocity))
+                .editMeta(CrossbowMeta.class, meta -> meta.addChargedProjectile(Bullet.CROSSBOW_ARROW))
+                .commit();
     }
 
     /**
@@ -168,11 +296,33 @@ public class Gun extends FuzeItem {
      * Returns the Ammo of this Gun.
      *
      * @return the Ammo
+     * @throws IllegalStateException when the Gun was not linked yet
      */
     public final @NotNull Ammo getAmmo() {
+        if (ammo == null) throw new IllegalStateException("Gun " + key + " was not linked yet!");
         return ammo;
     }
 
+    /**
+     * Resolves the Ammo of this Gun.
+     *
+     * @throws IllegalArgumentException when no ammo with the ammo key exists
+     */
+    @Override
+    protected void link() {
+        ammo = Ammo.valueOf(ammoKey);
+    }
+
+    /**
+     * Returns the key of the Ammo of this Gun.
+     *
+     * @return a set containing the Ammo key
+     */
+    @Override
+    public @NotNull Set<String> getDependencies() {
+        return Set.of(ammoKey);
+    }
+
     /**
      * Returns the damage of this Gun.
      *
@@ -184,6 +334,7 @@ public class Gun extends FuzeItem {
 
     /**
      * Returns the shoot cooldown of this Gun.
+     * <p>Enforced per player by {@link Shooters}.</p>
      *
      * @return the shoot cooldown in milliseconds
      */
@@ -191,67 +342,265 @@ public class Gun extends FuzeItem {
         return shootCooldown;
     }
 
-    @Subscribe
-    private static void onPlayerInteract(final @NotNull PlayerInteractEvent event) {
-        if (!event.hasItem()) return;
-        ItemStack item = Objects.requireNonNull(event.getItem());
+    /**
+     * Returns the velocity of this Gun's bullets.
+     * <p>The unit depends on the {@link Mode}: for {@link Mode#PROJECTILE} guns it multiplies the launch velocity
+     * of the arrow, for {@link Mode#SIMULATED} guns it is in blocks per tick. Hitscan guns ignore it.</p>
+     *
+     * @return the velocity
+     */
+    public final double getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * Returns the firing mode of this Gun.
+     *
+     * @return the firing mode
+     */
+    public final @NotNull Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the maximum distance of this Gun's hitscan shots.
+     *
+     * @return the range in blocks
+     */
+    public final double getRange() {
+        return range;
+    }
+
+    /**
+     * Returns the gravity of this Gun's simulated bullets.
+     *
+     * @return the gravity in blocks per tick squared
+     */
+    public final double getGravity() {
+        return gravity;
+    }
+
+    /**
+     * Returns the fraction of velocity this Gun's simulated bullets lose every tick.
+     *
+     * @return the drag
+     */
+    public final double getDrag() {
+        return drag;
+    }
+
+    /**
+     * Returns the maximum age of this Gun's simulated bullets.
+     *
+     * @return the lifetime in ticks
+     */
+    public final int getLifetime() {
+        return lifetime;
+    }
+
+    /**
+     * Returns whether this Gun keeps firing while the trigger is held.
+     *
+     * @return true when the Gun is automatic otherwise false
+     */
+    public final boolean isAutomatic() {
+        return automatic;
+    }
+
+    /**
+     * Returns the penetration power of this Gun's hitscan and simulated bullets.
+     * <p>Passing through a block costs a bullet the penetration cost of the block, see {@link MaterialTable}.</p>
+     *
+     * @return the penetration power
+     */
+    public final double getPenetration() {
+        return penetration;
+    }
+
+    /**
+     * The firing modes of guns.
+     */
+    public enum Mode {
+        /**
+         * Every shot launches an arrow, suitable for slow projectiles.
+         */
+        PROJECTILE,
+        /**
+         * Every shot is resolved immediately by a ray trace from the eyes of the shooter up to the gun range,
+         * no entity is spawned.
+         */
+        HITSCAN,
+        /**
+         * Every shot fires a bullet simulated by the {@link BulletEngine}, with travel time and drop but without an entity.
+         * The velocity is in blocks per tick.
+         */
+        SIMULATED
+    }
+
+    /**
+     * A snapshot of the gun data stored inside a gun {@link ItemStack}.
+     * <p>The shoot cooldown is not stored in the item, it is checked before the item is read,
+     * see {@link Gun#getShootCooldown()}.</p>
+     *
+     * @param damage   the damage
+     * @param velocity the velocity of the bullets
+     */
+    public record Stats(double damage, double velocity) {
+        /**
+         * The stat block schema of gun stats.
+         * <p>Version 2: damage (double), velocity (double).</p>
+         * <p>Version 1: shoot cooldown (int, ignored), damage (double), velocity (double).</p>
+         */
+        public static final @NotNull StatBlockType<Stats> TYPE = new StatBlockType<>(Stats.class, 2, 2 * Double.BYTES) {
+            @Override
+            protected void encode(final @NotNull Stats stats, final @NotNull ByteBuffer buffer) {
+                buffer.putDouble(stats.damage());
+                buffer.putDouble(stats.velocity());
+            }
+
+            @Override
+            protected @NotNull Stats decode(final int version, final @NotNull ByteBuffer buffer) {
+                if (version == 1) buffer.getInt();
+                return new Stats(buffer.getDouble(), buffer.getDouble());
+            }
+        };
+
+        /**
+         * Reads the gun data stored inside a gun {@link ItemStack}.
+         * <p>The item meta is copied just once for all the data.</p>
+         *
+         * @param item the gun ItemStack to read the data from
+         * @return the gun data snapshot
+         * @throws IllegalStateException when the gun item is corrupted
+         */
+        public static @NotNull Stats read(final @NotNull ItemStack item) {
+            ItemMeta meta = item.getItemMeta();
+            if (meta == null) throw new IllegalStateException("The gun item is corrupted! Couldn't find item meta!");
+            PersistentDataContainer container = meta.getPersistentDataContainer();
+            Optional<Stats> stats = Gun.STATS.read(container);
+            if (stats.isPresent()) return stats.get();
+            // Guns created before the stat block was introduced store every stat separately
+            return new Stats(
+                    Gun.DAMAGE.read(container)
+                            .orElseThrow(() -> new IllegalStateException("The gun item is corrupted! Couldn't find damage!")),
+                    Gun.VELOCITY.read(container)
+                            .orElseThrow(() -> new IllegalStateException("The gun item is corrupted! Couldn't find velocity!"))
+            );
+        }
+    }
+
+    // Interactions with air are fired already cancelled, so cancelled events can't be ignored here,
+    // HIGH lets protection plugins deny the item use first, interactions with a denied item use are not routed
+    @Subscribe(route = Route.HELD_ITEM, priority = EventPriority.HIGH)
+    private void onPlayerInteract(final @NotNull PlayerInteractEvent event) {
         Player player = event.getPlayer();
-        if (!Gun.exists(item)) return;
-        Gun gun = Gun.valueOf(item);
         switch (event.getAction()) {
-            case RIGHT_CLICK_AIR -> Gun.shoot(event, gun);
+            case RIGHT_CLICK_AIR -> shoot(event);
             case RIGHT_CLICK_BLOCK -> {
                 Block block = Objects.requireNonNull(event.getClickedBlock());
                 if (!player.isSneaking() && block.getType().isInteractable()) return;
-                Gun.shoot(event, gun);
+                shoot(event);
             }
-            case LEFT_CLICK_AIR -> Gun.zoom(event, gun);
+            case LEFT_CLICK_AIR -> zoom(event);
             case LEFT_CLICK_BLOCK -> {
                 if (!player.isSneaking()) return;
-                Gun.zoom(event, gun);
+                zoom(event);
             }
         }
     }
 
-    private static void shoot(final @NotNull PlayerInteractEvent event, final @NotNull Gun gun) {
+    private void shoot(final @NotNull PlayerInteractEvent event) {
         event.setCancelled(true);
-        ItemStack item = Objects.requireNonNull(event.getItem());
-        AbstractArrow bullet = event.getPlayer().launchProjectile(Arrow.class);
-        bullet.setPickupStatus(AbstractArrow.PickupStatus.DISALLOWED);
-        Bullet.GUN_KEY.write(bullet, gun.getKey());
-        Bullet.GUN_DAMAGE.write(bullet, Gun.DAMAGE.read(item)
-                .orElseThrow(() -> new IllegalStateException("The gun item is corrupted! Couldn't find damage!")));
-        double velocity = Gun.VELOCITY.read(item)
-                .orElseThrow(() -> new IllegalStateException("The gun item is corrupted! Couldn't find velocity!"));
-        bullet.setVelocity(bullet.getVelocity().multiply(velocity));
+        Player player = event.getPlayer();
+        int tick = Bukkit.getCurrentTick();
+        // Clients repeat the use while the trigger is held, the shots of automatic guns are fired by the ticker
+        if (automatic && Shooters.INSTANCE.holdTrigger(player, this, tick)) return;
+        // Checked before the item is read, clicks within the cooldown are rejected right away
+        boolean ready = Shooters.INSTANCE.tryShoot(player, System.nanoTime(), shootCooldown);
+        if (!ready && !automatic) return;
+        Stats stats = Stats.read(Objects.requireNonNull(event.getItem()));
+        if (automatic) Shooters.INSTANCE.pullTrigger(player, this, stats, tick);
+        if (ready) fire(player, stats);
     }
 
-    private static void zoom(final @NotNull PlayerInteractEvent event, final @NotNull Gun gun) {
-        event.setCancelled(true);
+    /**
+     * Fires a single shot of this Gun according to its {@link Mode}.
+     * <p>The shoot cooldown is not checked, see {@link Shooters}.</p>
+     *
+     * @param player the shooter
+     * @param stats  the stats of the gun item
+     */
+    public void fire(final @NotNull Player player, final @NotNull Stats stats) {
+        switch (mode) {
+            case PROJECTILE -> launch(player, stats);
+            case HITSCAN -> hitscan(player, stats);
+            case SIMULATED -> BulletEngine.INSTANCE.fire(player, this, stats);
+        }
+    }
 
+    private void launch(final @NotNull Player player, final @NotNull Stats stats) {
+        AbstractArrow bullet = player.launchProjectile(Arrow.class);
+        bullet.setPickupStatus(AbstractArrow.PickupStatus.DISALLOWED);
+        Bullet.track(bullet, id, stats.damage());
+        bullet.setVelocity(bullet.getVelocity().multiply(stats.velocity()));
     }
 
-    @Subscribe
-    private static void onProjectileHit(final @NotNull ProjectileHitEvent event) {
-        Projectile projectile = event.getEntity();
-        if (!Bullet.GUN_KEY.contains(projectile)) return;
+    private void hitscan(final @NotNull Player player, final @NotNull Stats stats) {
+        Location eye = player.getEyeLocation();
+        Vector direction = eye.getDirection();
+        BulletPath path = Gun.HITSCAN_PATH;
+        path.start(eye.getX(), eye.getY(), eye.getZ(), direction.getX(), direction.getY(), direction.getZ(), penetration);
+        LivingEntity target = path.travel(player.getWorld(), range, player, Config.instance().getMaterials());
+        if (target != null) Bullet.damage(target, player, id, stats.damage());
+    }
+
+    private void zoom(final @NotNull PlayerInteractEvent event) {
+        event.setCancelled(true);
 
     }
 
-    @Subscribe
+    @Subscribe(ignoreCancelled = true)
     private static void onEntityDamageByEntity(final @NotNull EntityDamageByEntityEvent event) {
         if (!(event.getEntity() instanceof LivingEntity target)) return;
-        if (!(event.getDamager() instanceof Projectile projectile) || !Bullet.GUN_KEY.contains(projectile)) {
+        OptionalDouble shotDamage = Bullet.getShotDamage(event.getDamager());
+        if (shotDamage.isPresent()) {
+            event.setDamage(shotDamage.getAsDouble());
+            target.setMaximumNoDamageTicks(0);
+            return;
+        }
+        if (!(event.getDamager() instanceof Projectile projectile) || !Bullet.isBullet(projectile)) {
             target.setMaximumNoDamageTicks(20);
             return;
         }
-        double damage = Bullet.GUN_DAMAGE.read(projectile)
+        double damage = Bullet.getDamage(projectile)
                 .orElseThrow(() -> new IllegalStateException("The projectile is corrupted! Couldn't find damage!"));
         event.setDamage(damage);
         target.setMaximumNoDamageTicks(0);
     }
 
+    @Subscribe(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private static void onBulletHit(final @NotNull ProjectileHitEvent event) {
+        if (event.getHitBlock() != null) Bullet.untrack(event.getEntity());
+    }
+
     @Subscribe
+    private static void onEntityRemoveFromWorld(final @NotNull EntityRemoveFromWorldEvent event) {
+        Bullet.untrack(event.getEntity());
+    }
+
+    // Unloaded bullets may be saved with their chunk, keep their metadata in their persistent data
+    @Subscribe
+    private static void onEntitiesUnload(final @NotNull EntitiesUnloadEvent event) {
+        for (Entity entity : event.getEntities())
+            Bullet.persist(entity);
+    }
+
+    @Subscribe
+    private static void onPlayerQuit(final @NotNull PlayerQuitEvent event) {
+        Shooters.INSTANCE.release(event.getPlayer());
+    }
+
+    @Subscribe(ignoreCancelled = true)
     private static void onEntityDamage(final @NotNull EntityDamageEvent event) {
         switch (event.getCause()) {
             case ENTITY_ATTACK, ENTITY_SWEEP_ATTACK, PROJECTILE, ENTITY_EXPLOSION, THORNS, DRAGON_BREATH, SONIC_BOOM -> {
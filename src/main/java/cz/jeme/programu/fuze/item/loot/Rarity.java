@@ -1,38 +1,31 @@
 package cz.jeme.programu.fuze.item.loot;
 
+import cz.jeme.programu.fuze.item.ItemManager;
+import cz.jeme.programu.fuze.item.ItemRegistry;
 import cz.jeme.programu.fuze.item.Keyable;
 import cz.jeme.programu.fuze.util.Messages;
 import net.kyori.adventure.text.Component;
 import org.bukkit.configuration.ConfigurationSection;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 
 /**
  * Represents a fuze item rarity.
  */
 public final class Rarity implements Keyable {
-    private static final @NotNull Map<String, Rarity> RARITIES = new HashMap<>();
-
     /**
-     * Registers all the rarities in the provided {@link ConfigurationSection}.
-     * <p>This method should not be called outside the Fuze API.</p>
+     * Loads a rarity from its {@link ConfigurationSection}.
+     * <p>This method should not be called outside the Fuze API,
+     * rarities are registered using {@link ItemRegistry.Builder#registerRarities(String)}.</p>
      *
-     * @param section the {@link ConfigurationSection} to register all rarities in
-     * @throws IllegalArgumentException when it encounters an invalid rarity {@link ConfigurationSection}
+     * @param section the {@link ConfigurationSection} of the rarity
+     * @return the loaded rarity
+     * @throws NullPointerException     when name or chance is not set in config
+     * @throws IllegalArgumentException when the chance is not bigger than zero
      */
-    public static void registerRarities(final @NotNull ConfigurationSection section) {
-        Rarity.RARITIES.clear();
-        for (String rarityName : section.getKeys(false)) {
-            ConfigurationSection raritySection = section.getConfigurationSection(rarityName);
-            if (raritySection == null)
-                throw new IllegalArgumentException("Invalid rarity in \"" + rarityName + "\"!");
-
-            Rarity.RARITIES.put(rarityName, new Rarity(raritySection));
-        }
+    public static @NotNull Rarity load(final @NotNull ConfigurationSection section) {
+        return new Rarity(section);
     }
 
     /**
@@ -43,7 +36,7 @@ public final class Rarity implements Keyable {
      * @throws IllegalArgumentException when no rarity with the provided key exists
      */
     public static @NotNull Rarity valueOf(final @NotNull String key) {
-        return Optional.ofNullable(Rarity.RARITIES.get(key))
+        return ItemManager.INSTANCE.getRarity(key)
                 .orElseThrow(() -> new IllegalArgumentException("Unknown rarity key: \"" + key + "\"!"));
     }
 
@@ -54,7 +47,7 @@ public final class Rarity implements Keyable {
      * @return true when the rarity exists otherwise false
      */
     public static boolean exists(final @NotNull String key) {
-        return Rarity.RARITIES.containsKey(key);
+        return ItemManager.INSTANCE.getRarity(key).isPresent();
     }
 
     private final @NotNull String key;
@@ -63,8 +56,6 @@ public final class Rarity implements Keyable {
 
     private Rarity(final @NotNull ConfigurationSection section) {
         key = section.getName();
-        if (Rarity.RARITIES.containsKey(key))
-            throw new IllegalArgumentException("\"name\" is not unique in rarity \"" + key + "\"!");
 
         name = Messages.deserialize(Objects.requireNonNull(
                 section.getString("name"),
@@ -76,8 +67,6 @@ public final class Rarity implements Keyable {
         chance = section.getInt("chance");
         if (chance <= 0)
             throw new IllegalArgumentException("\"chance\" is not bigger than zero in rarity \"" + key + "\"!");
-
-        Rarity.RARITIES.put(key, this);
     }
 
     /**
@@ -19,6 +19,18 @@ import java.util.Optional;
  * @param <V> the retrieved (secondary) data type used when writing and reading
  */
 public interface PersistentData<K, V> extends PersistentDataType<K, V> {
+    /**
+     * Starts a batch of writes to an {@link ItemStack}.
+     * <p>Use this instead of multiple {@link PersistentData#write(ItemStack, Object)} calls,
+     * the batch copies and sets the item meta just once for all the writes.</p>
+     *
+     * @param item the ItemStack to write to
+     * @return a new empty batch
+     */
+    static @NotNull PersistentDataBatch batch(final @NotNull ItemStack item) {
+        return new PersistentDataBatch(item);
+    }
+
     /**
      * Returns the {@link NamespacedKey} under which this ItemData is registered.
      *
@@ -101,6 +113,7 @@ public interface PersistentData<K, V> extends PersistentDataType<K, V> {
 
     /**
      * Writes this ItemData to an {@link ItemStack}.
+     * <p>When writing multiple ItemData to one ItemStack, use {@link PersistentData#batch(ItemStack)} instead.</p>
      *
      * @param item  the ItemStack to write this ItemData to
      * @param value the value of this ItemData to write
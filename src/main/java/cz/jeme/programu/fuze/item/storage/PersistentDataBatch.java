@@ -0,0 +1,94 @@
+package cz.jeme.programu.fuze.item.storage;
+
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Stages multiple {@link PersistentData} writes and item meta edits of an {@link ItemStack}
+ * and commits them all at once.
+ * <p>Every {@link PersistentData#write(ItemStack, Object)} copies the item meta and sets it back,
+ * a batch does that just once in {@link PersistentDataBatch#commit()}, no matter how many changes were staged.</p>
+ * <p>Obtained using {@link PersistentData#batch(ItemStack)}.</p>
+ */
+public final class PersistentDataBatch {
+    private final @NotNull ItemStack item;
+    private final @NotNull List<Consumer<ItemMeta>> changes = new ArrayList<>();
+
+    PersistentDataBatch(final @NotNull ItemStack item) {
+        this.item = item;
+    }
+
+    /**
+     * Stages a write of persistent data.
+     *
+     * @param data  the persistent data to write
+     * @param value the value to write
+     * @param <V>   the retrieved (secondary) data type of the persistent data
+     * @return this batch
+     */
+    public <V> @NotNull PersistentDataBatch write(final @NotNull PersistentData<?, V> data, final @NotNull V value) {
+        changes.add(meta -> data.write(meta, value));
+        return this;
+    }
+
+    /**
+     * Stages a removal of persistent data.
+     *
+     * @param data the persistent data to remove
+     * @return this batch
+     */
+    public @NotNull PersistentDataBatch remove(final @NotNull PersistentData<?, ?> data) {
+        changes.add(meta -> meta.getPersistentDataContainer().remove(data.getNamespacedKey()));
+        return this;
+    }
+
+    /**
+     * Stages an edit of the item meta.
+     *
+     * @param edit the edit to apply to the item meta
+     * @return this batch
+     */
+    public @NotNull PersistentDataBatch editMeta(final @NotNull Consumer<? super ItemMeta> edit) {
+        changes.add(edit::accept);
+        return this;
+    }
+
+    /**
+     * Stages an edit of the item meta of a specific type.
+     *
+     * @param metaClass the class of the item meta
+     * @param edit      the edit to apply to the item meta
+     * @param <M>       the item meta
+     * @return this batch
+     * @throws IllegalStateException on commit, when the item meta is not instance of the provided class
+     */
+    public <M extends ItemMeta> @NotNull PersistentDataBatch editMeta(final @NotNull Class<M> metaClass, final @NotNull Consumer<? super M> edit) {
+        changes.add(meta -> {
+            if (!metaClass.isInstance(meta))
+                throw new IllegalStateException("Meta of item \"%s\" is not instance of \"%s\"!"
+                        .formatted(item.getType(), metaClass.getName()));
+            edit.accept(metaClass.cast(meta));
+        });
+        return this;
+    }
+
+    /**
+     * Applies all the staged changes to the item with a single item meta copy and set.
+     * <p>The staged changes are cleared, so the batch can be reused.</p>
+     */
+    public void commit() {
+        if (changes.isEmpty()) return;
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null) meta = Bukkit.getItemFactory().getItemMeta(item.getType());
+        for (Consumer<ItemMeta> change : changes)
+            change.accept(meta);
+        item.setItemMeta(meta);
+        changes.clear();
+    }
+}
@@ -0,0 +1,103 @@
+package cz.jeme.programu.fuze.item.storage;
+
+import org.bukkit.persistence.PersistentDataAdapterContext;
+import org.bukkit.persistence.PersistentDataType;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link PersistentDataType} packing all the stats of an item type into a single versioned byte array.
+ * <p>Every item type declares its schema by extending this class, one tag per item instead of one tag per stat
+ * keeps the item NBT (and the inventory packets) small and lets a single read fetch all the stats.</p>
+ * <p>The first byte of the array is the schema version. When the schema changes, the version is increased
+ * and {@link StatBlockType#decode(int, ByteBuffer)} keeps decoding the older layouts.</p>
+ *
+ * @param <R> the stats record
+ */
+public abstract class StatBlockType<R> implements PersistentDataType<byte[], R> {
+    private final @NotNull Class<R> complexType;
+    private final int version;
+    private final int size;
+
+    /**
+     * Creates a new stat block type.
+     *
+     * @param complexType the stats record class
+     * @param version     the current schema version, 1 to 255
+     * @param size        the size of the current schema in bytes, without the version header
+     * @throws IllegalArgumentException when the version or size is out of range
+     */
+    protected StatBlockType(final @NotNull Class<R> complexType, final int version, final int size) {
+        if (version < 1 || version > 0xFF)
+            throw new IllegalArgumentException("Stat block version must be between 1 and 255!");
+        if (size < 0)
+            throw new IllegalArgumentException("Stat block size must not be negative!");
+        this.complexType = complexType;
+        this.version = version;
+        this.size = size;
+    }
+
+    /**
+     * Writes the stats in the current schema.
+     *
+     * @param stats  the stats to write
+     * @param buffer the buffer to write to, with exactly the declared size remaining
+     */
+    protected abstract void encode(final @NotNull R stats, final @NotNull ByteBuffer buffer);
+
+    /**
+     * Reads the stats written in a schema.
+     *
+     * @param version the schema version the stats were written in, never newer than the current version
+     * @param buffer  the buffer to read from
+     * @return the read stats
+     */
+    protected abstract @NotNull R decode(final int version, final @NotNull ByteBuffer buffer);
+
+    /**
+     * Returns the current schema version.
+     *
+     * @return the schema version
+     */
+    public final int getVersion() {
+        return version;
+    }
+
+    @Override
+    public final @NotNull Class<byte[]> getPrimitiveType() {
+        return byte[].class;
+    }
+
+    @Override
+    public final @NotNull Class<R> getComplexType() {
+        return complexType;
+    }
+
+    @Override
+    public final byte @NotNull [] toPrimitive(final @NotNull R complex, final @NotNull PersistentDataAdapterContext context) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + size);
+        buffer.put((byte) version);
+        encode(complex, buffer);
+        if (buffer.hasRemaining())
+            throw new IllegalStateException("Stat block of \"%s\" is smaller than its declared size!"
+                    .formatted(complexType.getName()));
+        return buffer.array();
+    }
+
+    @Override
+    public final @NotNull R fromPrimitive(final byte @NotNull [] primitive, final @NotNull PersistentDataAdapterContext context) {
+        if (primitive.length == 0)
+            throw new IllegalArgumentException("Stat block of \"%s\" is empty!".formatted(complexType.getName()));
+        int blockVersion = primitive[0] & 0xFF;
+        if (blockVersion > version)
+            throw new IllegalArgumentException("Stat block of \"%s\" has unsupported version %d!"
+                    .formatted(complexType.getName(), blockVersion));
+        try {
+            return decode(blockVersion, ByteBuffer.wrap(primitive, 1, primitive.length - 1));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Stat block of \"%s\" is truncated!".formatted(complexType.getName()), e);
+        }
+    }
+}
@@ -1,29 +1,216 @@
 package cz.jeme.programu.fuze.util;
 
+import cz.jeme.programu.fuze.item.FuzeItem;
+import cz.jeme.programu.fuze.item.ItemManager;
 import cz.jeme.programu.fuze.item.impl.Gun;
 import cz.jeme.programu.fuze.item.storage.FuzePersistentData;
 import cz.jeme.programu.fuze.item.storage.PersistentData;
 import org.bukkit.Material;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.persistence.PersistentDataContainer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.OptionalDouble;
 
 /**
  * A helper class with stuff related to bullets.
+ * <p>The metadata of arrow bullets (the gun id and the damage) is held in memory, in primitive tables indexed
+ * by the slots of the bullets (see {@link EntitySlots}). The metadata is written to the persistent data
+ * of a bullet only when the bullet is unloaded or the plugin is disabled, see {@link Bullet#persist(Entity)}. Lookups check the tables
+ * first and fall back to the persistent data, so bullets unloaded or fired before are still recognized.</p>
+ * <p>The tables must only be accessed from the main thread.</p>
  */
 public final class Bullet {
     /**
      * The arrow used when filling the crossbow when initializing a {@link Gun}.
      */
     public static final @NotNull ItemStack CROSSBOW_ARROW = new ItemStack(Material.ARROW);
+    /**
+     * Id of the source gun data storage.
+     * <p>Only written when a bullet is unloaded, see {@link Bullet#persist(Entity)}.</p>
+     */
+    public static final @NotNull PersistentData<Integer, Integer> GUN_ID = new FuzePersistentData<>("bullet_gun_id", PersistentData.INTEGER);
     /**
      * Key of the source gun data storage.
+     * <p>No longer written, only read from bullets fired before {@link Bullet#GUN_ID} was introduced.</p>
      */
     public static final @NotNull PersistentData<String, String> GUN_KEY = new FuzePersistentData<>("bullet_gun_key", PersistentData.STRING);
     /**
      * Damage of the source gun data storage.
+     * <p>Only written when a bullet is unloaded, see {@link Bullet#persist(Entity)}.</p>
      */
     public static final @NotNull PersistentData<Double, Double> GUN_DAMAGE = new FuzePersistentData<>("bullet_gun_damage", PersistentData.DOUBLE);
 
+    private static final int INITIAL_CAPACITY = 256;
+    private static final @NotNull EntitySlots SLOTS = new EntitySlots();
+    private static int @NotNull [] gunIds = new int[Bullet.INITIAL_CAPACITY];
+    private static double @NotNull [] damages = new double[Bullet.INITIAL_CAPACITY];
+    private static @Nullable Entity @NotNull [] entities = new Entity[Bullet.INITIAL_CAPACITY];
+
+    /**
+     * The entity-free shot whose damage is being applied, see {@link Bullet#damage(LivingEntity, Entity, int, double)}.
+     * <p>Only accessed from the main thread.</p>
+     */
+    private static @Nullable Shot shot;
+
+    /**
+     * An entity-free shot whose damage is being applied.
+     *
+     * @param shooter the entity who fired the shot
+     * @param gunId   the id of the source gun
+     * @param damage  the damage of the shot
+     */
+    private record Shot(@NotNull Entity shooter, int gunId, double damage) {
+    }
+
+    /**
+     * Damages an entity by a shot without a bullet entity, e.g. a hitscan or a simulated shot.
+     * <p>The damage goes through the damage events, where {@link Bullet#getShotDamage(Entity)}
+     * tells it apart from a regular attack of the shooter. While the damage is applied, {@link Bullet#getGun(Entity)}
+     * returns the source gun for the shooter, so the events are routed to the gun.</p>
+     * <p>Must be called from the main thread.</p>
+     *
+     * @param target  the entity to damage
+     * @param shooter the entity who fired the shot
+     * @param gunId   the id of the source gun
+     * @param damage  the damage of the shot
+     */
+    public static void damage(final @NotNull LivingEntity target, final @NotNull Entity shooter, final int gunId, final double damage) {
+        Shot previous = Bullet.shot;
+        Bullet.shot = new Shot(shooter, gunId, damage);
+        try {
+            target.setNoDamageTicks(0);
+            target.damage(damage, shooter);
+        } finally {
+            Bullet.shot = previous;
+        }
+    }
+
+    /**
+     * Returns the damage of the shot being applied by a damager, see {@link Bullet#damage(LivingEntity, Entity, int, double)}.
+     *
+     * @param damager the damager of a damage event
+     * @return the damage of the shot or an empty optional when the damager is not applying a shot
+     */
+    public static @NotNull OptionalDouble getShotDamage(final @NotNull Entity damager) {
+        Shot shot = Bullet.shot;
+        return shot != null && shot.shooter() == damager ? OptionalDouble.of(shot.damage()) : OptionalDouble.empty();
+    }
+
+    /**
+     * Starts tracking a bullet fired from a {@link Gun}.
+     *
+     * @param entity the bullet
+     * @param gunId  the id of the source gun
+     * @param damage the damage of the bullet
+     */
+    public static void track(final @NotNull Entity entity, final int gunId, final double damage) {
+        int slot = Bullet.SLOTS.assign(entity.getEntityId());
+        if (slot >= Bullet.gunIds.length) {
+            Bullet.gunIds = Arrays.copyOf(Bullet.gunIds, Bullet.gunIds.length * 2);
+            Bullet.damages = Arrays.copyOf(Bullet.damages, Bullet.damages.length * 2);
+            Bullet.entities = Arrays.copyOf(Bullet.entities, Bullet.entities.length * 2);
+        }
+        Bullet.gunIds[slot] = gunId;
+        Bullet.damages[slot] = damage;
+        Bullet.entities[slot] = entity;
+    }
+
+    /**
+     * Stops tracking a bullet, called when the bullet hit a block or was removed.
+     * <p>Does nothing when the entity is not tracked.</p>
+     *
+     * @param entity the bullet
+     */
+    public static void untrack(final @NotNull Entity entity) {
+        int slot = Bullet.SLOTS.release(entity.getEntityId());
+        if (slot != EntitySlots.NONE) Bullet.entities[slot] = null;
+    }
+
+    /**
+     * Writes the metadata of a tracked bullet to its persistent data and stops tracking it,
+     * called when the bullet is unloaded.
+     * <p>Does nothing when the entity is not tracked.</p>
+     *
+     * @param entity the bullet
+     */
+    public static void persist(final @NotNull Entity entity) {
+        int slot = Bullet.SLOTS.release(entity.getEntityId());
+        if (slot == EntitySlots.NONE) return;
+        Bullet.entities[slot] = null;
+        Bullet.GUN_ID.write(entity, Bullet.gunIds[slot]);
+        Bullet.GUN_DAMAGE.write(entity, Bullet.damages[slot]);
+    }
+
+    /**
+     * Writes the metadata of all the tracked bullets to their persistent data and stops tracking them,
+     * called when the plugin is disabled.
+     * <p>This method should not be called outside the Fuze API.</p>
+     */
+    public static void persistAll() {
+        for (int slot = 0; slot < Bullet.SLOTS.capacity(); slot++) {
+            Entity entity = Bullet.entities[slot];
+            if (entity != null) Bullet.persist(entity);
+        }
+    }
+
+    /**
+     * Returns whether an entity is a bullet fired from a {@link Gun}.
+     *
+     * @param entity the entity to check
+     * @return true when the entity is a bullet otherwise false
+     */
+    public static boolean isBullet(final @NotNull Entity entity) {
+        if (Bullet.SLOTS.get(entity.getEntityId()) != EntitySlots.NONE) return true;
+        PersistentDataContainer container = entity.getPersistentDataContainer();
+        return Bullet.GUN_ID.contains(container) || Bullet.GUN_KEY.contains(container);
+    }
+
+    /**
+     * Returns the damage of a bullet.
+     *
+     * @param entity the bullet
+     * @return the damage or an empty optional when the entity is not a bullet
+     */
+    public static @NotNull OptionalDouble getDamage(final @NotNull Entity entity) {
+        int slot = Bullet.SLOTS.get(entity.getEntityId());
+        if (slot != EntitySlots.NONE) return OptionalDouble.of(Bullet.damages[slot]);
+        Optional<Double> damage = Bullet.GUN_DAMAGE.read(entity);
+        return damage.map(OptionalDouble::of).orElseGet(OptionalDouble::empty);
+    }
+
+    /**
+     * Returns the {@link Gun} a bullet was fired from.
+     * <p>For the shooter of an entity-free shot being applied, returns the gun of the shot,
+     * see {@link Bullet#damage(LivingEntity, Entity, int, double)}.</p>
+     *
+     * @param entity the bullet or the shooter of an entity-free shot
+     * @return the source gun or an empty optional when the entity is not a bullet or the gun no longer exists
+     */
+    public static @NotNull Optional<Gun> getGun(final @NotNull Entity entity) {
+        Shot shot = Bullet.shot;
+        if (shot != null && shot.shooter() == entity) return Bullet.getGun(shot.gunId());
+        int slot = Bullet.SLOTS.get(entity.getEntityId());
+        if (slot != EntitySlots.NONE) return Bullet.getGun(Bullet.gunIds[slot]);
+        PersistentDataContainer container = entity.getPersistentDataContainer();
+        Optional<Integer> id = Bullet.GUN_ID.read(container);
+        Optional<FuzeItem> gun = id.isPresent()
+                ? ItemManager.INSTANCE.getItemById(id.get())
+                : Bullet.GUN_KEY.read(container).flatMap(ItemManager.INSTANCE::getItemByKey);
+        return gun.filter(Gun.class::isInstance).map(Gun.class::cast);
+    }
+
+    private static @NotNull Optional<Gun> getGun(final int id) {
+        return ItemManager.INSTANCE.getItemById(id)
+                .filter(Gun.class::isInstance)
+                .map(Gun.class::cast);
+    }
+
     private Bullet() {
         throw new AssertionError();
     }
@@ -0,0 +1,166 @@
+package cz.jeme.programu.fuze.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Assigns compact slots to entities by their entity id.
+ * <p>The slots index parallel primitive tables held by the owner of the slots. Entity ids are mapped
+ * to slots using an open addressing hash table with linear probing, so a lookup costs a few array reads
+ * and never allocates. Released slots are reused, so the slots stay dense.</p>
+ * <p>Not thread safe.</p>
+ */
+public final class EntitySlots {
+    /**
+     * The slot returned for entities without a slot.
+     */
+    public static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int @NotNull [] keys = new int[EntitySlots.INITIAL_CAPACITY * 2];
+    private int @NotNull [] values = EntitySlots.emptyTable(EntitySlots.INITIAL_CAPACITY * 2);
+    private int count = 0;
+
+    private int @NotNull [] released = new int[EntitySlots.INITIAL_CAPACITY];
+    private int releasedCount = 0;
+    private int slots = 0;
+
+    /**
+     * Returns the slot of an entity.
+     *
+     * @param id the entity id
+     * @return the slot of the entity or {@link EntitySlots#NONE} when the entity has no slot
+     */
+    public int get(final int id) {
+        int mask = keys.length - 1;
+        int index = EntitySlots.hash(id) & mask;
+        while (values[index] != EntitySlots.NONE) {
+            if (keys[index] == id) return values[index];
+            index = (index + 1) & mask;
+        }
+        return EntitySlots.NONE;
+    }
+
+    /**
+     * Returns the slot of an entity, assigning a new one when the entity has no slot yet.
+     * <p>New slots are either released slots or the next slot after all the slots assigned so far,
+     * see {@link EntitySlots#capacity()}.</p>
+     *
+     * @param id the entity id
+     * @return the slot of the entity
+     */
+    public int assign(final int id) {
+        int mask = keys.length - 1;
+        int index = EntitySlots.hash(id) & mask;
+        while (values[index] != EntitySlots.NONE) {
+            if (keys[index] == id) return values[index];
+            index = (index + 1) & mask;
+        }
+        if ((count + 1) * 2 > keys.length) {
+            grow();
+            return assign(id);
+        }
+        final int slot;
+        if (releasedCount > 0) {
+            slot = released[--releasedCount];
+        } else {
+            if (slots == released.length) released = Arrays.copyOf(released, released.length * 2);
+            slot = slots++;
+        }
+        keys[index] = id;
+        values[index] = slot;
+        count++;
+        return slot;
+    }
+
+    /**
+     * Releases the slot of an entity, so it can be assigned to another entity.
+     *
+     * @param id the entity id
+     * @return the released slot or {@link EntitySlots#NONE} when the entity had no slot
+     */
+    public int release(final int id) {
+        int mask = keys.length - 1;
+        int index = EntitySlots.hash(id) & mask;
+        while (values[index] != EntitySlots.NONE) {
+            if (keys[index] == id) {
+                int slot = values[index];
+                released[releasedCount++] = slot;
+                remove(index);
+                return slot;
+            }
+            index = (index + 1) & mask;
+        }
+        return EntitySlots.NONE;
+    }
+
+    /**
+     * Releases all the slots.
+     */
+    public void clear() {
+        Arrays.fill(values, EntitySlots.NONE);
+        count = 0;
+        releasedCount = 0;
+        slots = 0;
+    }
+
+    /**
+     * Returns the number of slots ever assigned, all slots are less than this number.
+     * <p>Tables indexed by the slots must be at least this long.</p>
+     *
+     * @return the slot capacity
+     */
+    public int capacity() {
+        return slots;
+    }
+
+    /**
+     * Removes an entry, shifting back the following entries of its probe sequence.
+     */
+    private void remove(final int index) {
+        int mask = keys.length - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (values[next] != EntitySlots.NONE) {
+            int home = EntitySlots.hash(keys[next]) & mask;
+            // Move the entry when the hole lies between its home and its current index
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[hole] = EntitySlots.NONE;
+        count--;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = EntitySlots.emptyTable(oldKeys.length * 2);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == EntitySlots.NONE) continue;
+            int index = EntitySlots.hash(oldKeys[i]) & mask;
+            while (values[index] != EntitySlots.NONE)
+                index = (index + 1) & mask;
+            keys[index] = oldKeys[i];
+            values[index] = oldValues[i];
+        }
+    }
+
+    private static int @NotNull [] emptyTable(final int size) {
+        int[] table = new int[size];
+        Arrays.fill(table, EntitySlots.NONE);
+        return table;
+    }
+
+    private static int hash(final int id) {
+        int hash = id * 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
+}
@@ -0,0 +1,115 @@
+package cz.jeme.programu.fuze.util;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * An immutable table of the ballistic properties of block materials.
+ * <p>The properties are precomputed into flat arrays indexed by {@link Material#ordinal()},
+ * so looking up a property of a block hit by a bullet is a single array read.</p>
+ * <p>By default every block stops bullets, except glass (see {@link Materials#isGlass(Material)}),
+ * which lets bullets pass for {@link MaterialTable#GLASS_PENETRATION_COST} and shatters.
+ * The defaults can be overridden in config, see {@link MaterialTable#load(ConfigurationSection)}.</p>
+ */
+public final class MaterialTable {
+    /**
+     * The penetration cost of glass when not set in config.
+     */
+    public static final double GLASS_PENETRATION_COST = 0.25;
+
+    /**
+     * The table with the default properties of all materials.
+     */
+    public static final @NotNull MaterialTable DEFAULT = MaterialTable.load(null);
+
+    private final double @NotNull [] penetrationCost;
+    private final double @NotNull [] ricochetChance;
+    private final boolean @NotNull [] breakable;
+
+    private MaterialTable(final double @NotNull [] penetrationCost,
+                          final double @NotNull [] ricochetChance,
+                          final boolean @NotNull [] breakable) {
+        this.penetrationCost = penetrationCost;
+        this.ricochetChance = ricochetChance;
+        this.breakable = breakable;
+    }
+
+    /**
+     * Loads a material table from config.
+     * <p>Every key of the section is a material name with these optional properties:</p>
+     * <ul>
+     *     <li>{@code penetration}: the penetration power a bullet loses passing through the block, -1 when the block stops bullets</li>
+     *     <li>{@code ricochet}: the chance (0-1) that a bullet stopped by the block bounces off it</li>
+     *     <li>{@code breakable}: whether the block shatters when a bullet passes through it</li>
+     * </ul>
+     *
+     * @param section the materials {@link ConfigurationSection} or null to load only the defaults
+     * @return the loaded material table
+     * @throws IllegalArgumentException when a material is unknown or invalid
+     */
+    public static @NotNull MaterialTable load(final @Nullable ConfigurationSection section) {
+        Material[] materials = Material.values();
+        double[] penetrationCost = new double[materials.length];
+        double[] ricochetChance = new double[materials.length];
+        boolean[] breakable = new boolean[materials.length];
+        Arrays.fill(penetrationCost, Double.POSITIVE_INFINITY);
+        for (Material material : materials) {
+            if (!Materials.isGlass(material)) continue;
+            penetrationCost[material.ordinal()] = MaterialTable.GLASS_PENETRATION_COST;
+            breakable[material.ordinal()] = true;
+        }
+        if (section == null) return new MaterialTable(penetrationCost, ricochetChance, breakable);
+
+        for (String name : section.getKeys(false)) {
+            Material material = Material.matchMaterial(name);
+            ConfigurationSection materialSection = section.getConfigurationSection(name);
+            if (material == null || materialSection == null)
+                throw new IllegalArgumentException("Invalid material in \"" + name + "\"!");
+            int i = material.ordinal();
+            if (materialSection.contains("penetration")) {
+                double cost = materialSection.getDouble("penetration");
+                penetrationCost[i] = cost < 0 ? Double.POSITIVE_INFINITY : cost;
+            }
+            double chance = materialSection.getDouble("ricochet", ricochetChance[i]);
+            if (chance < 0 || chance > 1)
+                throw new IllegalArgumentException("Invalid ricochet chance of \"" + name + "\", must be between 0 and 1!");
+            ricochetChance[i] = chance;
+            breakable[i] = materialSection.getBoolean("breakable", breakable[i]);
+        }
+        return new MaterialTable(penetrationCost, ricochetChance, breakable);
+    }
+
+    /**
+     * Returns the penetration power a bullet loses passing through a block.
+     *
+     * @param material the material of the block
+     * @return the penetration cost or {@link Double#POSITIVE_INFINITY} when the block stops bullets
+     */
+    public double getPenetrationCost(final @NotNull Material material) {
+        return penetrationCost[material.ordinal()];
+    }
+
+    /**
+     * Returns the chance that a bullet stopped by a block bounces off it.
+     *
+     * @param material the material of the block
+     * @return the ricochet chance between 0 and 1
+     */
+    public double getRicochetChance(final @NotNull Material material) {
+        return ricochetChance[material.ordinal()];
+    }
+
+    /**
+     * Returns whether a block shatters when a bullet passes through it.
+     *
+     * @param material the material of the block
+     * @return true when the block is breakable otherwise false
+     */
+    public boolean isBreakable(final @NotNull Material material) {
+        return breakable[material.ordinal()];
+    }
+}
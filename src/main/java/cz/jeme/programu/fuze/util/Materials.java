@@ -10,7 +10,9 @@ public final class Materials {
 
     public static boolean isGlass(final @NotNull Material material) {
         return switch (material) {
-            case WHITE_STAINED_GLASS,
+            case GLASS,
+                    GLASS_PANE,
+                    WHITE_STAINED_GLASS,
                     ORANGE_STAINED_GLASS,
                     MAGENTA_STAINED_GLASS,
                     LIGHT_BLUE_STAINED_GLASS,